@@ -41,7 +41,19 @@ def init_database():
             updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
         )
     ''')
-    
+
+    # Журнал уже применённых изменений (ключи идемпотентности клиентов).
+    # Повторная отправка того же изменения не применяется второй раз.
+    cursor.execute('''
+        CREATE TABLE IF NOT EXISTS processed_ops (
+            op_key TEXT PRIMARY KEY,      -- Ключ, сгенерированный клиентом
+            action TEXT NOT NULL,         -- create / update / delete
+            product_id INTEGER,           -- Товар, к которому применено
+            status TEXT NOT NULL,         -- Результат применения
+            created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+        )
+    ''')
+
     # Добавляем тестовые данные если таблица пуста
     cursor.execute("SELECT COUNT(*) FROM products")
     if cursor.fetchone()[0] == 0:
@@ -351,50 +363,147 @@ def delete_product(product_id):
 
 # ==================== СИНХРОНИЗАЦИЯ ====================
 
+# Сколько дней хранить ключи идемпотентности
+PROCESSED_OPS_TTL_DAYS = 30
+
+def resolve_product_id(cursor, change):
+    """Найти ID товара: напрямую или по ключу операции создания"""
+    if change.get('id') is not None:
+        return change['id']
+
+    target_key = change.get('target_key')
+    if target_key:
+        cursor.execute(
+            "SELECT product_id FROM processed_ops WHERE op_key = ?",
+            (target_key,)
+        )
+        row = cursor.fetchone()
+        if row:
+            return row['product_id']
+
+    return None
+
+def apply_change(cursor, change):
+    """Применить одно изменение клиента, вернуть (статус, ID товара, ошибки)
+
+    'rejected' означает окончательный отказ валидации: повтор ничего не изменит.
+    Любая другая ошибка поднимается наверх и откатывает всю пачку.
+    """
+    action = change.get('action')
+
+    if action == 'create':
+        errors = validate_product(change)
+        if errors:
+            return 'rejected', None, errors
+        cursor.execute(
+            "INSERT INTO products (name, purchased, notes) VALUES (?, ?, ?)",
+            (change['name'].strip(), 1 if change.get('purchased') else 0,
+             (change.get('notes') or '').strip())
+        )
+        return 'applied', cursor.lastrowid, []
+
+    if action not in ('update', 'delete'):
+        return 'rejected', None, [f"Неизвестное действие: {action}"]
+
+    product_id = resolve_product_id(cursor, change)
+    if product_id is None:
+        return 'not_found', None, []
+
+    if action == 'update':
+        errors = validate_product(change)
+        if errors:
+            return 'rejected', product_id, errors
+        cursor.execute(
+            "UPDATE products SET name = ?, purchased = ?, notes = ?, "
+            "updated_at = CURRENT_TIMESTAMP WHERE id = ?",
+            (change['name'].strip(), 1 if change.get('purchased') else 0,
+             (change.get('notes') or '').strip(), product_id)
+        )
+
+    else:
+        cursor.execute("DELETE FROM products WHERE id = ?", (product_id,))
+
+    # Товар мог быть удален с другого устройства - повтор тоже не нужен
+    return ('applied' if cursor.rowcount > 0 else 'not_found'), product_id, []
+
 @app.route('/api/sync', methods=['POST'])
 def sync_products():
-    """Синхронизация товаров (для нескольких устройств)"""
+    """Синхронизация товаров (для нескольких устройств)
+
+    Клиент присылает пачку изменений из своей очереди, каждое со своим
+    ключом 'key'. Изменение с уже известным ключом не применяется повторно,
+    поэтому клиент может безопасно повторять запрос после обрыва связи.
+
+    Если применить изменение не удалось по временной причине (например,
+    база занята), пачка откатывается целиком и клиент получает 500 -
+    изменения остаются у него в очереди до следующей попытки.
+    """
+    conn = None
     try:
-        data = request.get_json()
-        
-        # Получаем последние изменения с сервера
+        data = request.get_json() or {}
+
         conn = get_db_connection()
         cursor = conn.cursor()
-        
-        # Получаем все товары
-        cursor.execute("SELECT id, name, purchased, notes, updated_at FROM products")
-        server_products = cursor.fetchall()
-        
-        # Если клиент отправил свои изменения - обрабатываем их
+
+        cursor.execute(
+            "DELETE FROM processed_ops WHERE created_at < datetime('now', ?)",
+            (f'-{PROCESSED_OPS_TTL_DAYS} days',)
+        )
+
+        # Если клиент отправил свои изменения - обрабатываем их по порядку
         client_changes = data.get('changes', [])
         applied_changes = []
-        
+
         for change in client_changes:
-            try:
-                action = change.get('action')
-                
-                if action == 'create':
-                    cursor.execute(
-                        "INSERT INTO products (name, purchased, notes) VALUES (?, ?, ?)",
-                        (change['name'], change.get('purchased', 0), change.get('notes', ''))
-                    )
-                    
-                elif action == 'update':
-                    cursor.execute(
-                        "UPDATE products SET name = ?, purchased = ?, notes = ? WHERE id = ?",
-                        (change['name'], change.get('purchased', 0), change.get('notes', ''), change['id'])
-                    )
-                    
-                elif action == 'delete':
-                    cursor.execute("DELETE FROM products WHERE id = ?", (change['id'],))
-                
-                applied_changes.append(action)
-                
-            except Exception as e:
-                print(f"⚠️ Ошибка применения изменения: {e}")
-        
+            key = change.get('key')
+            action = change.get('action')
+
+            if key:
+                cursor.execute(
+                    "SELECT product_id, status FROM processed_ops WHERE op_key = ?",
+                    (key,)
+                )
+                processed = cursor.fetchone()
+                if processed:
+                    applied_changes.append({
+                        'key': key,
+                        'action': action,
+                        'id': processed['product_id'],
+                        'status': 'duplicate'
+                    })
+                    continue
+
+            status, product_id, errors = apply_change(cursor, change)
+
+            if key:
+                cursor.execute(
+                    "INSERT INTO processed_ops (op_key, action, product_id, status) "
+                    "VALUES (?, ?, ?, ?)",
+                    (key, action or '', product_id, status)
+                )
+
+            result = {
+                'key': key,
+                'action': action,
+                'id': product_id,
+                'status': status
+            }
+            if errors:
+                result['error'] = '; '.join(errors)
+            applied_changes.append(result)
+
         conn.commit()
-        
+
+        # Промежуточные пачки большой очереди список товаров не запрашивают
+        server_products = []
+        if data.get('include_data', True):
+            # Отдаем состояние уже после применения изменений клиента
+            cursor.execute(
+                "SELECT id, name, purchased, notes, created_at, updated_at FROM products "
+                "ORDER BY purchased, created_at DESC"
+            )
+            server_products = cursor.fetchall()
+
         # Формируем ответ
         products_list = []
         for row in server_products:
@@ -403,23 +512,29 @@ def sync_products():
                 'name': row['name'],
                 'purchased': bool(row['purchased']),
                 'notes': row['notes'],
+                'created_at': row['created_at'],
                 'updated_at': row['updated_at']
             })
-        
+
         conn.close()
-        
-        print(f"✅ Синхронизация: отправлено {len(products_list)} товаров")
-        
+
+        print(f"✅ Синхронизация: применено {len(applied_changes)} изменений, "
+              f"отправлено {len(products_list)} товаров")
+
         return jsonify({
             'success': True,
             'message': 'Синхронизация успешна',
-            'data': products_list,
+            'data': products_list if data.get('include_data', True) else None,
             'applied_changes': applied_changes,
             'timestamp': datetime.now().isoformat()
         })
-        
+
     except Exception as e:
         print(f"❌ Ошибка синхронизации: {e}")
+        # Ни одно изменение пачки не зафиксировано - клиент повторит ее целиком
+        if conn is not None:
+            conn.rollback()
+            conn.close()
         return jsonify({
             'success': False,
             'error': str(e)
@@ -0,0 +1,114 @@
+package com.example.shoppinglist2;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Замер импорта и экспорта больших списков на устройстве.
+ * Результаты пишутся в logcat с тегом BENCH.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ListTransferBenchmark {
+    private static final int ROWS = 100_000;
+    // Построчная вставка слишком медленная для 100k, сравниваем на меньшем объеме
+    private static final int SINGLE_INSERT_ROWS = 5_000;
+
+    private AppDatabase db;
+    private ListTransfer transfer;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        transfer = new ListTransfer(db, new ItemNameIndex(), Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void import100kCsv() throws IOException {
+        byte[] csv = generateCsv(ROWS);
+
+        long start = System.nanoTime();
+        int imported = transfer.importFrom(new ByteArrayInputStream(csv), null).imported;
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        Log.i("BENCH", "CSV import: " + imported + " rows in " + elapsedMs + " ms ("
+                + (imported * 1000L / Math.max(elapsedMs, 1)) + " rows/s)");
+        assertEquals(ROWS, imported);
+        assertEquals(ROWS, db.shoppingItemDao().count());
+        assertEquals(ROWS, db.outboxDao().count());
+    }
+
+    @Test
+    public void export100kJson() throws IOException {
+        transfer.importFrom(new ByteArrayInputStream(generateCsv(ROWS)), null);
+
+        CountingOutputStream out = new CountingOutputStream();
+        long start = System.nanoTime();
+        int exported = transfer.exportTo(out, ListTransfer.Format.JSON, null);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        Log.i("BENCH", "JSON export: " + exported + " rows, " + out.bytes + " bytes in "
+                + elapsedMs + " ms");
+        assertEquals(ROWS, exported);
+    }
+
+    @Test
+    public void singleRowInsertBaseline() {
+        long start = System.nanoTime();
+        for (int i = 0; i < SINGLE_INSERT_ROWS; i++) {
+            // Каждый вызов - отдельная транзакция, как при добавлении по одному
+            db.shoppingItemDao().insert(new ShoppingItem("Товар " + i, "", false));
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        Log.i("BENCH", "Single-row insert: " + SINGLE_INSERT_ROWS + " rows in " + elapsedMs + " ms ("
+                + (SINGLE_INSERT_ROWS * 1000L / Math.max(elapsedMs, 1)) + " rows/s)");
+        assertEquals(SINGLE_INSERT_ROWS, db.shoppingItemDao().count());
+    }
+
+    private static byte[] generateCsv(int rows) {
+        StringBuilder sb = new StringBuilder("name,notes,purchased,created_at\r\n");
+        for (int i = 0; i < rows; i++) {
+            sb.append("Товар ").append(i)
+                    .append(",\"Заметка, ").append(i % 10).append(" шт\",")
+                    .append(i % 3 == 0)
+                    .append(",2024-01-01 12:00:00\r\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long bytes = 0;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
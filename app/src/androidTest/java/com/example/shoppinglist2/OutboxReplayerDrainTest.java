@@ -0,0 +1,256 @@
+package com.example.shoppinglist2;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+
+import retrofit2.Call;
+import retrofit2.mock.Calls;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проход по очереди изменений на настоящей базе Room и подставном сервере.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OutboxReplayerDrainTest {
+    private AppDatabase db;
+    private FakeApi api;
+    private OutboxReplayer replayer;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        api = new FakeApi();
+        replayer = new OutboxReplayer(db, api);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void serverList_notAppliedWhileOutboxHasEntries() {
+        ShoppingItem bread = addItem("Хлеб");
+        final ShoppingItem[] milk = new ShoppingItem[1];
+        // Пока идет запрос, пользователь добавляет товар; сервер о нем еще не знает
+        api.responses.add(request -> {
+            milk[0] = addItem("Молоко");
+            return response(acknowledge(request, "applied", 10), product(10, "Хлеб"));
+        });
+        api.responses.add(request -> {
+            // Список из первого ответа не должен был стереть новый товар
+            assertNotNull(findByName("Молоко"));
+            return response(acknowledge(request, "applied", 11),
+                    product(10, "Хлеб"), product(11, "Молоко"));
+        });
+
+        OutboxReplayer.Result result = replayer.drain();
+
+        assertTrue(result.success);
+        assertEquals(2, result.sent);
+        assertEquals(2, api.requests.size());
+        assertEquals(Arrays.asList(milk[0].clientKey), keys(api.requests.get(1)));
+        assertEquals(0, db.outboxDao().count());
+        assertEquals(10, findByName(bread.name).id);
+        assertEquals(11, findByName("Молоко").id);
+        // Оба товара созданы на этом устройстве
+        assertTrue(result.received.isEmpty());
+    }
+
+    @Test
+    public void partialAck_deletesOnlyAcknowledgedEntries() {
+        ShoppingItem bread = addItem("Хлеб");
+        addItem("Молоко");
+        addItem("Сыр");
+        api.responses.add(request -> {
+            List<SyncResult> results = acknowledge(request, "applied", 20);
+            // Второе изменение не применилось, третье - да, но удалять его раньше второго нельзя
+            results.get(1).status = "error";
+            return response(results);
+        });
+
+        OutboxReplayer.Result result = replayer.drain();
+
+        assertFalse(result.success);
+        assertEquals(1, result.sent);
+        List<OutboxEntry> left = db.outboxDao().getBatch(OutboxReplayer.BATCH_SIZE);
+        assertEquals(2, left.size());
+        assertEquals("Молоко", left.get(0).name);
+        assertEquals("Сыр", left.get(1).name);
+        // Подтвержденный товар сразу получает id с сервера
+        assertEquals(20, findByName(bread.name).id);
+        assertTrue(findByName("Молоко").id < 0);
+    }
+
+    @Test
+    public void serverIdFromPartialAck_itemNotReportedAsReceivedLater() {
+        addItem("Хлеб");
+        addItem("Молоко");
+        api.responses.add(request -> {
+            List<SyncResult> results = acknowledge(request, "applied", 30);
+            results.get(1).status = "error";
+            return response(results);
+        });
+        assertFalse(replayer.drain().success);
+
+        api.responses.add(request -> response(acknowledge(request, "applied", 31),
+                product(30, "Хлеб"), product(31, "Молоко"), product(5, "Соль")));
+        OutboxReplayer.Result result = replayer.drain();
+
+        assertTrue(result.success);
+        assertEquals(1, result.received.size());
+        assertEquals("Соль", result.received.get(0).name);
+        assertEquals(3, db.shoppingItemDao().count());
+    }
+
+    @Test
+    public void onlyLastBatch_requestsData() {
+        for (int i = 0; i <= OutboxReplayer.BATCH_SIZE; i++) {
+            addItem("Товар " + i);
+        }
+        api.responses.add(request -> response(acknowledge(request, "applied", 1000)));
+        api.responses.add(request -> response(acknowledge(request, "applied", 2000)));
+
+        OutboxReplayer.Result result = replayer.drain();
+
+        assertTrue(result.success);
+        assertEquals(2, api.requests.size());
+        assertFalse(api.requests.get(0).include_data);
+        assertEquals(OutboxReplayer.BATCH_SIZE, api.requests.get(0).changes.size());
+        assertTrue(api.requests.get(1).include_data);
+        assertEquals(1, api.requests.get(1).changes.size());
+    }
+
+    @Test
+    public void rejectedCreate_reportedAndRemovedFromOutbox() {
+        addItem("Хлеб");
+        addItem("Молоко");
+        api.responses.add(request -> {
+            List<SyncResult> results = acknowledge(request, "applied", 40);
+            results.get(1).status = "rejected";
+            results.get(1).id = null;
+            results.get(1).error = "Слишком длинное название";
+            return response(results, product(40, "Хлеб"));
+        });
+
+        OutboxReplayer.Result result = replayer.drain();
+
+        assertTrue(result.success);
+        assertEquals(2, result.sent);
+        assertEquals(Arrays.asList("Молоко: Слишком длинное название"), result.rejected);
+        assertEquals(0, db.outboxDao().count());
+        // Отклоненный товар исчезает вместе с обновлением списка с сервера
+        assertNull(findByName("Молоко"));
+    }
+
+    // Как ShoppingRepository.addItem: временный отрицательный id и изменение в очереди
+    private ShoppingItem addItem(String name) {
+        ShoppingItem item = new ShoppingItem(name, null, false);
+        item.clientKey = UUID.randomUUID().toString();
+        db.runInTransaction(() -> {
+            item.id = Math.min(db.shoppingItemDao().getMinId(), 0) - 1;
+            db.shoppingItemDao().insert(item);
+            db.outboxDao().insert(OutboxEntry.create(item));
+        });
+        return item;
+    }
+
+    private ShoppingItem findByName(String name) {
+        for (ShoppingItem item : db.shoppingItemDao().getAllItems()) {
+            if (item.name.equals(name)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    // Ответ на каждое изменение запроса; созданные товары получают id подряд от firstId
+    private static List<SyncResult> acknowledge(SyncRequest request, String status, int firstId) {
+        List<SyncResult> results = new ArrayList<>();
+        int nextId = firstId;
+        for (SyncChange change : request.changes) {
+            SyncResult result = new SyncResult();
+            result.key = change.key;
+            result.action = change.action;
+            result.status = status;
+            result.id = OutboxEntry.ACTION_CREATE.equals(change.action) ? nextId++ : change.id;
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static SyncResponse response(List<SyncResult> results, Product... data) {
+        SyncResponse response = new SyncResponse();
+        response.success = true;
+        response.applied_changes = results;
+        response.data = data.length > 0 ? data : null;
+        return response;
+    }
+
+    private static Product product(int id, String name) {
+        Product product = new Product(name, false, null);
+        product.id = id;
+        return product;
+    }
+
+    private static List<String> keys(SyncRequest request) {
+        List<String> keys = new ArrayList<>();
+        for (SyncChange change : request.changes) {
+            keys.add(change.key);
+        }
+        return keys;
+    }
+
+    private interface Server {
+        SyncResponse handle(SyncRequest request);
+    }
+
+    // Сервер, который отвечает на /api/sync заранее заданными ответами по очереди
+    private static class FakeApi implements ShoppingApi {
+        final List<SyncRequest> requests = new ArrayList<>();
+        final Deque<Server> responses = new ArrayDeque<>();
+
+        @Override
+        public Call<SyncResponse> sync(SyncRequest request) {
+            requests.add(request);
+            return Calls.response(responses.remove().handle(request));
+        }
+
+        @Override
+        public Call<ProductListResponse> getProducts() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Call<ProductResponse> createProduct(Product product) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Call<ProductResponse> updateProduct(int id, Product product) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Call<BasicResponse> deleteProduct(int id) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
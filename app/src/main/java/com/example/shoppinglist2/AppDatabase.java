@@ -8,27 +8,28 @@ import androidx.sqlite.db.SupportSQLiteDatabase;
 import android.content.Context;
 
 
-@Database(entities = {ShoppingItem.class}, version = 2, exportSchema = false)
+@Database(entities = {ShoppingItem.class, OutboxEntry.class}, version = 3, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     public abstract ShoppingItemDao shoppingItemDao();
+    public abstract OutboxDao outboxDao();
 
     private static volatile AppDatabase INSTANCE;
 
-    // Миграция с версии 2 на 3 для добавления полей дат
+    // Миграция с версии 2 на 3: очередь изменений и ключ товаров, созданных без связи
     static final Migration MIGRATION_2_3 = new Migration(2, 3) {
         @Override
         public void migrate(SupportSQLiteDatabase database) {
-            // Добавляем новые колонки
-            database.execSQL("ALTER TABLE shopping_items ADD COLUMN createdAt TEXT");
-            database.execSQL("ALTER TABLE shopping_items ADD COLUMN updatedAt TEXT");
+            database.execSQL("ALTER TABLE shopping_items ADD COLUMN clientKey TEXT");
 
-            // Заполняем текущей датой существующие записи
-            String currentDate = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
-                    .format(new java.util.Date());
-            database.execSQL("UPDATE shopping_items SET createdAt = ?, updatedAt = ?",
-                    new Object[]{currentDate, currentDate});
+            // Схема должна совпадать с той, что Room строит по OutboxEntry
+            database.execSQL("CREATE TABLE IF NOT EXISTS `outbox` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`opKey` TEXT, `action` TEXT, `productId` INTEGER, `targetKey` TEXT, "
+                    + "`name` TEXT, `note` TEXT, `isBought` INTEGER NOT NULL, `createdAt` TEXT)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_outbox_opKey` ON `outbox` (`opKey`)");
         }
     };
+
     public static AppDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
@@ -38,7 +39,9 @@ public abstract class AppDatabase extends RoomDatabase {
                                     AppDatabase.class,
                                     "shopping"
                             )
-                            .fallbackToDestructiveMigration()
+                            .addMigrations(MIGRATION_2_3)
+                            // Для версии 1 миграции нет: такая база пересоздается
+                            .fallbackToDestructiveMigrationFrom(1)
                             .build();
                 }
             }
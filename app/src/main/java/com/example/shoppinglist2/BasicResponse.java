@@ -0,0 +1,7 @@
+package com.example.shoppinglist2;
+
+// Класс для простых ответов
+class BasicResponse {
+    public boolean success;
+    public String message;
+}
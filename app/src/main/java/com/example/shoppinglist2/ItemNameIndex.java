@@ -0,0 +1,303 @@
+package com.example.shoppinglist2;
+
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Префиксный индекс названий товаров для автодополнения.
+// Ключи отсортированы, поэтому все названия с заданным префиксом лежат подряд
+// и выбираются через subMap без обхода всей истории.
+// Для широких префиксов ("м", "мо") лучшие названия хранятся готовыми,
+// чтобы ввод каждой буквы не перебирал тысячи совпадений.
+public class ItemNameIndex {
+    private static final int FILE_VERSION = 1;
+    // За сколько дней вес давней покупки падает вдвое
+    private static final double HALF_LIFE_DAYS = 30;
+    private static final double HALF_LIFE_MILLIS = HALF_LIFE_DAYS * 24 * 60 * 60 * 1000.0;
+
+    // Сколько лучших названий хранится для префикса; запросы на большее считаются перебором
+    static final int CACHED_TOP = 10;
+    // Префиксы с большим числом совпадений получают готовый список
+    static final int SCAN_LIMIT = 64;
+
+    // Статистика по одному названию
+    static class Entry {
+        String name;
+        int count;
+        long lastUsed;
+        String lastNote;
+        // Вес count * 0.5^(возраст / полураспад) при любом "сейчас" отличается
+        // у всех названий на один и тот же множитель, поэтому порядок задает
+        // log2(count) + lastUsed / полураспад. Он не зависит от времени,
+        // считается один раз при записи и только растет.
+        double rank;
+
+        void updateRank() {
+            rank = Math.log(count) / Math.log(2) + lastUsed / HALF_LIFE_MILLIS;
+        }
+    }
+
+    // Сначала больший вес; при равенстве - по алфавиту, чтобы порядок был стабильным
+    private static final Comparator<Entry> BY_RANK = (a, b) -> {
+        int c = Double.compare(b.rank, a.rank);
+        return c != 0 ? c : a.name.compareTo(b.name);
+    };
+
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+    // Префикс -> до CACHED_TOP лучших названий, отсортированных по BY_RANK.
+    // Только для префиксов, у которых больше SCAN_LIMIT совпадений.
+    private final Map<String, List<Entry>> topByPrefix = new HashMap<>();
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Учесть добавление товара. Вызывается при каждой вставке в список.
+    public synchronized void record(String name, String note, long time) {
+        if (name == null || name.trim().isEmpty()) {
+            return;
+        }
+        String key = key(name);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(key, entry);
+        }
+        entry.name = name.trim();
+        entry.count++;
+        if (time >= entry.lastUsed) {
+            entry.lastUsed = time;
+            entry.lastNote = note;
+        }
+        entry.updateRank();
+
+        // Вес только растет, поэтому готовые списки достаточно поправить этим названием
+        if (!topByPrefix.isEmpty()) {
+            for (int i = 1; i <= key.length(); i++) {
+                List<Entry> top = topByPrefix.get(key.substring(0, i));
+                if (top != null) {
+                    offer(top, entry);
+                }
+            }
+        }
+    }
+
+    private static void offer(List<Entry> top, Entry entry) {
+        if (!top.contains(entry)) {
+            if (top.size() >= CACHED_TOP) {
+                if (BY_RANK.compare(entry, top.get(top.size() - 1)) >= 0) {
+                    return;
+                }
+                top.remove(top.size() - 1);
+            }
+            top.add(entry);
+        }
+        Collections.sort(top, BY_RANK);
+    }
+
+    // До k подсказок по префиксу: чаще и недавно покупаемые первыми
+    public synchronized List<String> suggest(String prefix, int k) {
+        List<String> result = new ArrayList<>();
+        if (prefix == null || k <= 0) {
+            return result;
+        }
+        String from = key(prefix);
+        if (from.isEmpty()) {
+            return result;
+        }
+
+        List<Entry> cached = topByPrefix.get(from);
+        if (cached != null && k <= CACHED_TOP) {
+            for (int i = 0; i < Math.min(k, cached.size()); i++) {
+                result.add(cached.get(i).name);
+            }
+            return result;
+        }
+
+        SortedMap<String, Entry> range = entries.subMap(from, from + Character.MAX_VALUE);
+
+        // Минимальная куча: хранит лучшие из просмотренных
+        int size = Math.max(k, CACHED_TOP);
+        PriorityQueue<Entry> top = new PriorityQueue<>(size, (a, b) -> BY_RANK.compare(b, a));
+        int scanned = 0;
+        for (Entry entry : range.values()) {
+            scanned++;
+            if (top.size() < size) {
+                top.add(entry);
+            } else if (BY_RANK.compare(entry, top.peek()) < 0) {
+                top.poll();
+                top.add(entry);
+            }
+        }
+
+        List<Entry> best = new ArrayList<>(top);
+        Collections.sort(best, BY_RANK);
+        // Широкий префикс перебирается один раз, дальше ответ берется из готового списка
+        if (scanned > SCAN_LIMIT) {
+            topByPrefix.put(from, new ArrayList<>(best.subList(0, Math.min(CACHED_TOP, best.size()))));
+        }
+        for (int i = 0; i < Math.min(k, best.size()); i++) {
+            result.add(best.get(i).name);
+        }
+        return result;
+    }
+
+    // Последняя заметка, с которой добавлялся товар
+    public synchronized String lastNote(String name) {
+        Entry entry = entries.get(key(name));
+        return entry != null ? entry.lastNote : null;
+    }
+
+    // === ЗАГРУЗКА ===
+    // Читает индекс из файла; если файла нет, один раз строит его по таблице товаров.
+    // Индекс по пустой таблице не сохраняется: при первом запуске список приходит
+    // с сервера позже, и эти товары попадут в индекс через recordAll.
+    public void load(File file, ShoppingItemDao dao) {
+        if (file.exists()) {
+            try {
+                int names = readFrom(file);
+                cacheFirstLetters();
+                Log.d("INDEX", "Index loaded, names: " + names);
+                return;
+            } catch (IOException e) {
+                Log.e("INDEX", "Не удалось прочитать индекс, перестраиваем: " + e.getMessage());
+            }
+        }
+
+        List<ShoppingItem> items = dao.getAllItems();
+        int names;
+        synchronized (this) {
+            entries.clear();
+            topByPrefix.clear();
+            recordAll(items);
+            names = entries.size();
+        }
+        cacheFirstLetters();
+        Log.d("INDEX", "Index rebuilt from " + items.size() + " items, names: " + names);
+        if (!items.isEmpty()) {
+            save(file);
+        }
+    }
+
+    // Однобуквенные префиксы самые широкие: их списки строятся при загрузке
+    // за один проход, чтобы первая же буква не ждала перебора
+    synchronized void cacheFirstLetters() {
+        Map<String, List<Entry>> lists = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            String letter = e.getKey().substring(0, 1);
+            List<Entry> top = lists.get(letter);
+            if (top == null) {
+                top = new ArrayList<>(CACHED_TOP);
+                lists.put(letter, top);
+                counts.put(letter, 0);
+            }
+            offer(top, e.getValue());
+            counts.put(letter, counts.get(letter) + 1);
+        }
+        for (Map.Entry<String, List<Entry>> e : lists.entrySet()) {
+            if (counts.get(e.getKey()) > SCAN_LIMIT) {
+                topByPrefix.put(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    // Учесть товары, пришедшие извне (с сервера), по дате их создания
+    public synchronized void recordAll(List<ShoppingItem> items) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        long now = System.currentTimeMillis();
+        for (ShoppingItem item : items) {
+            long time = now;
+            if (item.createdAt != null) {
+                try {
+                    Date date = format.parse(item.createdAt);
+                    if (date != null) {
+                        time = date.getTime();
+                    }
+                } catch (ParseException e) {
+                    // Оставляем текущее время
+                }
+            }
+            record(item.name, item.note, time);
+        }
+    }
+
+    // Возвращает число прочитанных названий
+    int readFrom(File file) throws IOException {
+        Map<String, Entry> read = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                throw new IOException("Неизвестная версия файла индекса");
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                Entry entry = new Entry();
+                entry.name = in.readUTF();
+                entry.count = in.readInt();
+                entry.lastUsed = in.readLong();
+                entry.lastNote = in.readBoolean() ? in.readUTF() : null;
+                entry.updateRank();
+                read.put(key(entry.name), entry);
+            }
+        }
+
+        synchronized (this) {
+            entries.clear();
+            topByPrefix.clear();
+            entries.putAll(read);
+        }
+        return read.size();
+    }
+
+    // === СОХРАНЕНИЕ ===
+    // Пишет во временный файл и подменяет, чтобы не оставить обрезанный индекс
+    public void save(File file) {
+        List<Entry> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(entries.values());
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(snapshot.size());
+            for (Entry entry : snapshot) {
+                out.writeUTF(entry.name);
+                out.writeInt(entry.count);
+                out.writeLong(entry.lastUsed);
+                out.writeBoolean(entry.lastNote != null);
+                if (entry.lastNote != null) {
+                    out.writeUTF(entry.lastNote);
+                }
+            }
+        } catch (IOException e) {
+            Log.e("INDEX", "Не удалось сохранить индекс: " + e.getMessage());
+            return;
+        }
+
+        if (!tmp.renameTo(file)) {
+            Log.e("INDEX", "Не удалось заменить файл индекса");
+        }
+    }
+}
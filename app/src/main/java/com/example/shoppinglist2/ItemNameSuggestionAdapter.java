@@ -0,0 +1,49 @@
+package com.example.shoppinglist2;
+
+import android.content.Context;
+import android.widget.ArrayAdapter;
+import android.widget.Filter;
+import androidx.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.List;
+
+// Подсказки названий для поля ввода товара.
+// Вместо стандартного фильтра ArrayAdapter (перебор всех строк) спрашивает ItemNameIndex.
+public class ItemNameSuggestionAdapter extends ArrayAdapter<String> {
+    private static final int MAX_SUGGESTIONS = 5;
+
+    private final ItemNameIndex index;
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            List<String> suggestions = constraint == null
+                    ? new ArrayList<>()
+                    : index.suggest(constraint.toString(), MAX_SUGGESTIONS);
+            results.values = suggestions;
+            results.count = suggestions.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            clear();
+            if (results.values != null) {
+                addAll((List<String>) results.values);
+            }
+            notifyDataSetChanged();
+        }
+    };
+
+    public ItemNameSuggestionAdapter(Context context, ItemNameIndex index) {
+        super(context, android.R.layout.simple_dropdown_item_1line, new ArrayList<>());
+        this.index = index;
+    }
+
+    @NonNull
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+}
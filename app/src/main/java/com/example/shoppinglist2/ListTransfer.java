@@ -0,0 +1,507 @@
+package com.example.shoppinglist2;
+
+import android.util.Log;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+// Потоковый импорт и экспорт списка в CSV и JSON.
+// Файл читается и пишется по одной записи, в базу товары попадают пачками
+// по CHUNK_SIZE в одной транзакции, так что память не зависит от размера файла.
+public class ListTransfer {
+    static final int CHUNK_SIZE = 500;
+
+    // Колонки CSV совпадают с полями Product в JSON
+    private static final String[] CSV_COLUMNS = {"name", "notes", "purchased", "created_at"};
+
+    // Те же ограничения, что в validate_product на сервере: строку, которую сервер
+    // все равно отклонит, не добавляем и в локальный список
+    static final int MAX_NAME_LENGTH = 100;
+    static final int MAX_NOTES_LENGTH = 500;
+
+    public enum Format { CSV, JSON }
+
+    public interface ProgressListener {
+        void onProgress(int processed, int skipped);
+    }
+
+    // Получатель разобранных строк файла
+    interface RowSink {
+        void add(String name, String notes, boolean purchased, String createdAt);
+
+        // Строка с нечитаемым значением: пропускается, импорт продолжается
+        void skip();
+    }
+
+    // Итог импорта: сколько товаров добавлено и сколько строк пропущено
+    public static class ImportResult {
+        public final int imported;
+        public final int skipped;
+
+        ImportResult(int imported, int skipped) {
+            this.imported = imported;
+            this.skipped = skipped;
+        }
+    }
+
+    private final AppDatabase db;
+    private final ItemNameIndex nameIndex;
+    private final Executor indexExecutor;
+
+    // Названия записываются в индекс через indexExecutor - поток, который владеет индексом
+    public ListTransfer(AppDatabase db, ItemNameIndex nameIndex, Executor indexExecutor) {
+        this.db = db;
+        this.nameIndex = nameIndex;
+        this.indexExecutor = indexExecutor;
+    }
+
+    // === ИМПОРТ ===
+    // Формат определяется по первому символу: '[' или '{' - JSON, иначе CSV.
+    // Каждый товар добавляется локально и ставится в очередь на отправку серверу.
+    public ImportResult importFrom(InputStream in, ProgressListener progress) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        ChunkWriter writer = new ChunkWriter(progress);
+        parse(reader, writer);
+        writer.finish();
+        Log.d("TRANSFER", "Imported " + writer.total + " items, skipped " + writer.skipped);
+        return new ImportResult(writer.total, writer.skipped);
+    }
+
+    // Разбор файла без обращения к базе
+    static void parse(BufferedReader reader, RowSink writer) throws IOException {
+        int first = peekFirstChar(reader);
+        if (first == '[' || first == '{') {
+            importJson(reader, writer);
+        } else if (first != -1) {
+            importCsv(reader, writer);
+        }
+    }
+
+    private static void importJson(BufferedReader in, RowSink writer) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        reader.setLenient(true);
+
+        // Поддерживаем и голый массив, и ответ сервера вида {"data": [...]}
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("data") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    readJsonArray(reader, writer);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } else {
+            readJsonArray(reader, writer);
+        }
+    }
+
+    private static void readJsonArray(JsonReader reader, RowSink writer) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                writer.skip();
+                continue;
+            }
+
+            Product product = new Product();
+            boolean valid = true;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                JsonToken token = reader.peek();
+                if (token == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                // Строки и числа читаются как текст; объект или массив на месте поля - ошибка строки
+                boolean scalar = token == JsonToken.STRING || token == JsonToken.NUMBER;
+                switch (field) {
+                    case "name":
+                    case "notes":
+                    case "created_at":
+                        if (!scalar) {
+                            reader.skipValue();
+                            valid = false;
+                        } else if (field.equals("name")) {
+                            product.name = reader.nextString();
+                        } else if (field.equals("notes")) {
+                            product.notes = reader.nextString();
+                        } else {
+                            product.created_at = reader.nextString();
+                        }
+                        break;
+                    case "purchased":
+                        // Как в CSV: кроме true/false принимаются 1/0, "true", "да"
+                        Boolean purchased = null;
+                        if (token == JsonToken.BOOLEAN) {
+                            purchased = reader.nextBoolean();
+                        } else if (scalar) {
+                            purchased = parseBoolean(reader.nextString());
+                        } else {
+                            reader.skipValue();
+                        }
+                        if (purchased == null) {
+                            valid = false;
+                        } else {
+                            product.purchased = purchased;
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (valid) {
+                writer.add(product.name, product.notes, product.purchased, product.created_at);
+            } else {
+                writer.skip();
+            }
+        }
+        reader.endArray();
+    }
+
+    private static void importCsv(BufferedReader in, RowSink writer) throws IOException {
+        CsvReader reader = new CsvReader(in);
+
+        // Заголовок необязателен; без него колонки идут в порядке CSV_COLUMNS
+        int[] columns = {0, 1, 2, 3};
+        List<String> record = reader.readRecord();
+        if (record != null && isHeader(record)) {
+            columns = mapHeader(record);
+            record = reader.readRecord();
+        }
+
+        while (record != null) {
+            String name = field(record, columns[0]);
+            String notes = field(record, columns[1]);
+            String purchased = field(record, columns[2]);
+            String createdAt = field(record, columns[3]);
+            Boolean bought = purchased != null ? parseBoolean(purchased) : Boolean.FALSE;
+            if (bought != null) {
+                writer.add(name, notes, bought, createdAt);
+            } else {
+                writer.skip();
+            }
+            record = reader.readRecord();
+        }
+    }
+
+    // Заголовок - первая строка, в которой есть хотя бы одно имя колонки,
+    // в любом порядке: "notes,name" тоже заголовок
+    private static boolean isHeader(List<String> record) {
+        for (String cell : record) {
+            String column = cell.trim().toLowerCase(Locale.ROOT);
+            for (String known : CSV_COLUMNS) {
+                if (known.equals(column)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int[] mapHeader(List<String> header) {
+        int[] columns = {-1, -1, -1, -1};
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).trim().toLowerCase(Locale.ROOT);
+            for (int c = 0; c < CSV_COLUMNS.length; c++) {
+                if (CSV_COLUMNS[c].equals(column)) {
+                    columns[c] = i;
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static String field(List<String> record, int column) {
+        if (column < 0 || column >= record.size()) {
+            return null;
+        }
+        String value = record.get(column);
+        return value.isEmpty() ? null : value;
+    }
+
+    // null - значение не похоже ни на "да", ни на "нет"
+    static Boolean parseBoolean(String value) {
+        String v = value.trim().toLowerCase(Locale.ROOT);
+        if (v.equals("true") || v.equals("1") || v.equals("да")) {
+            return Boolean.TRUE;
+        }
+        if (v.isEmpty() || v.equals("false") || v.equals("0") || v.equals("нет")) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    // Пропускает BOM и пробелы, возвращает первый значимый символ не сдвигая поток
+    private static int peekFirstChar(BufferedReader reader) throws IOException {
+        while (true) {
+            reader.mark(1);
+            int c = reader.read();
+            if (c == -1) {
+                return -1;
+            }
+            if (c != '\uFEFF' && !Character.isWhitespace(c)) {
+                reader.reset();
+                return c;
+            }
+        }
+    }
+
+    // Накопитель пачки: одна транзакция Room на CHUNK_SIZE товаров
+    private class ChunkWriter implements RowSink {
+        private final ProgressListener progress;
+        private final List<ShoppingItem> items = new ArrayList<>(CHUNK_SIZE);
+        private int total = 0;
+        private int skipped = 0;
+
+        ChunkWriter(ProgressListener progress) {
+            this.progress = progress;
+        }
+
+        @Override
+        public void skip() {
+            skipped++;
+        }
+
+        @Override
+        public void add(String name, String notes, boolean purchased, String createdAt) {
+            String trimmedName = name != null ? name.trim() : "";
+            String trimmedNotes = notes != null ? notes.trim() : "";
+            if (!isValid(trimmedName, trimmedNotes)) {
+                skipped++;
+                return;
+            }
+            ShoppingItem item = new ShoppingItem(trimmedName, trimmedNotes, purchased);
+            item.clientKey = UUID.randomUUID().toString();
+            item.createdAt = createdAt != null ? createdAt : new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
+                    .format(new java.util.Date());
+            item.updatedAt = item.createdAt;
+            items.add(item);
+
+            if (items.size() >= CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        // Последняя пачка; прогресс сообщается, даже если все строки были пропущены
+        void finish() {
+            if (!items.isEmpty()) {
+                flush();
+            } else if (progress != null) {
+                progress.onProgress(total, skipped);
+            }
+        }
+
+        void flush() {
+            if (items.isEmpty()) {
+                return;
+            }
+            db.runInTransaction(() -> {
+                // Временные отрицательные id, как у товаров, добавленных без связи
+                int nextId = Math.min(db.shoppingItemDao().getMinId(), 0) - 1;
+                List<OutboxEntry> entries = new ArrayList<>(items.size());
+                for (ShoppingItem item : items) {
+                    item.id = nextId--;
+                    entries.add(OutboxEntry.create(item));
+                }
+                db.shoppingItemDao().insertAll(items);
+                db.outboxDao().insertAll(entries);
+            });
+
+            long now = System.currentTimeMillis();
+            final List<ShoppingItem> chunk = new ArrayList<>(items);
+            indexExecutor.execute(() -> {
+                for (ShoppingItem item : chunk) {
+                    nameIndex.record(item.name, item.note, now);
+                }
+            });
+
+            total += items.size();
+            items.clear();
+            if (progress != null) {
+                progress.onProgress(total, skipped);
+            }
+        }
+    }
+
+    // Длина считается в символах Unicode, как len() в Python на сервере
+    static boolean isValid(String name, String notes) {
+        return !name.isEmpty()
+                && name.codePointCount(0, name.length()) <= MAX_NAME_LENGTH
+                && notes.codePointCount(0, notes.length()) <= MAX_NOTES_LENGTH;
+    }
+
+    // === ЭКСПОРТ ===
+    // Товары читаются из базы страницами по CHUNK_SIZE и сразу пишутся в поток.
+    // Все страницы читаются в одной транзакции: синхронизация, заменяющая список
+    // целиком, дождется конца экспорта и не даст в файле смесь старых и новых строк.
+    public int exportTo(OutputStream out, Format format, ProgressListener progress) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        int total;
+        db.beginTransaction();
+        try {
+            if (format == Format.JSON) {
+                total = exportJson(writer, progress);
+            } else {
+                total = exportCsv(writer, progress);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        writer.flush();
+        Log.d("TRANSFER", "Exported " + total + " items as " + format);
+        return total;
+    }
+
+    private int exportCsv(Writer writer, ProgressListener progress) throws IOException {
+        writeCsvRecord(writer, CSV_COLUMNS);
+
+        int total = 0;
+        int afterId = Integer.MIN_VALUE;
+        List<ShoppingItem> page;
+        while (!(page = db.shoppingItemDao().getItemsAfter(afterId, CHUNK_SIZE)).isEmpty()) {
+            for (ShoppingItem item : page) {
+                writeCsvRecord(writer, new String[]{
+                        item.name, item.note, String.valueOf(item.isBought), item.createdAt});
+            }
+            afterId = page.get(page.size() - 1).id;
+            total += page.size();
+            if (progress != null) {
+                progress.onProgress(total, 0);
+            }
+        }
+        return total;
+    }
+
+    private int exportJson(Writer out, ProgressListener progress) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setIndent("  ");
+        writer.beginArray();
+
+        int total = 0;
+        int afterId = Integer.MIN_VALUE;
+        List<ShoppingItem> page;
+        while (!(page = db.shoppingItemDao().getItemsAfter(afterId, CHUNK_SIZE)).isEmpty()) {
+            for (ShoppingItem item : page) {
+                writer.beginObject();
+                writer.name("name").value(item.name);
+                writer.name("notes").value(item.note);
+                writer.name("purchased").value(item.isBought);
+                writer.name("created_at").value(item.createdAt);
+                writer.endObject();
+            }
+            afterId = page.get(page.size() - 1).id;
+            total += page.size();
+            if (progress != null) {
+                progress.onProgress(total, 0);
+            }
+        }
+
+        writer.endArray();
+        writer.flush();
+        return total;
+    }
+
+    private static void writeCsvRecord(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = fields[i] != null ? fields[i] : "";
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    // Потоковый разбор CSV (RFC 4180): кавычки, "" внутри кавычек, переводы строк в полях
+    static class CsvReader {
+        private final BufferedReader reader;
+
+        CsvReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        // Следующая запись или null в конце файла
+        List<String> readRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+
+            int c;
+            while ((c = reader.read()) != -1) {
+                any = true;
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int next = reader.read();
+                        if (next == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if (next != -1) {
+                                reader.reset();
+                            }
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    // Пустые строки пропускаем
+                    if (fields.isEmpty() && field.length() == 0) {
+                        any = false;
+                        continue;
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                } else {
+                    field.append((char) c);
+                }
+            }
+
+            if (!any) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -2,43 +2,56 @@ package com.example.shoppinglist2;
 
 import android.app.AlertDialog;
 import android.content.DialogInterface;
+import android.net.Uri;
 import android.os.Bundle;
 import android.text.InputType;
-import android.util.Log;
 import android.view.View;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.TextView;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import java.util.ArrayList;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
-public class MainActivity extends AppCompatActivity {
+public class MainActivity extends AppCompatActivity implements ShoppingRepository.Listener {
 
-    // === RETROFIT ===
-    private ShoppingApi api;
+    // === ЛОКАЛЬНЫЕ ДАННЫЕ И ОЧЕРЕДЬ ===
+    private ShoppingRepository repository;
+    private boolean offline = false;
 
     // === UI ===
     private ShoppingItemAdapter adapter;
-    private EditText etItemName;
+    private AutoCompleteTextView etItemName;
     private EditText etItemNote;
     private Button btnAdd;
+    private Button btnImport;
+    private Button btnExport;
+    private TextView tvTransferStatus;
     private RecyclerView recyclerView;
 
-    // === IP RASPBERRY PI ===
-    // ЗАМЕНИТЕ НА РЕАЛЬНЫЙ IP АДРЕС ВАШЕГО RASPBERRY PI!
-    // Пример: "http://192.168.1.100:5000/"
-    // Для эмулятора можно использовать "http://10.0.2.2:5000/"
-    private static final String BASE_URL = "http://10.0.2.2:5000/";
+    // === ИМПОРТ И ЭКСПОРТ ===
+    // Выбор файла через системный диалог, сам файл читается и пишется потоково
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importFromUri);
+    private final ActivityResultLauncher<String> exportCsvLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("text/csv"),
+                    uri -> exportToUri(uri, ListTransfer.Format.CSV));
+    private final ActivityResultLauncher<String> exportJsonLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("application/json"),
+                    uri -> exportToUri(uri, ListTransfer.Format.JSON));
+
+    // Сколько отклоненных сервером изменений перечислять в диалоге
+    private static final int MAX_REJECTED_SHOWN = 10;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -49,22 +62,31 @@ public class MainActivity extends AppCompatActivity {
         etItemName = findViewById(R.id.etItemName);
         etItemNote = findViewById(R.id.etItemNote);
         btnAdd = findViewById(R.id.btnAdd);
+        btnImport = findViewById(R.id.btnImport);
+        btnExport = findViewById(R.id.btnExport);
+        tvTransferStatus = findViewById(R.id.tvTransferStatus);
         recyclerView = findViewById(R.id.recyclerView);
 
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         adapter = new ShoppingItemAdapter();
         recyclerView.setAdapter(adapter);
 
-        // Инициализация Retrofit с правильным URL
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(BASE_URL)
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
-
-        api = retrofit.create(ShoppingApi.class);
-
-        // Загрузка данных с сервера
-        loadProductsFromServer();
+        // Сразу показываем локальную копию, затем синхронизируемся с сервером.
+        // При появлении сети очередь отправляет SyncWorker, отслеживать ее здесь не нужно.
+        repository = ShoppingRepository.getInstance(this);
+        repository.setListener(this);
+        repository.loadItems();
+
+        // Подсказки названий из истории покупок
+        etItemName.setAdapter(new ItemNameSuggestionAdapter(this, repository.getNameIndex()));
+        etItemName.setOnItemClickListener((parent, view, position, id) -> {
+            String name = (String) parent.getItemAtPosition(position);
+            String lastNote = repository.getNameIndex().lastNote(name);
+            // Подставляем прошлую заметку, только если пользователь не ввел свою
+            if (lastNote != null && etItemNote.getText().toString().trim().isEmpty()) {
+                etItemNote.setText(lastNote);
+            }
+        });
 
         // Обработчик добавления
         btnAdd.setOnClickListener(v -> {
@@ -72,27 +94,39 @@ public class MainActivity extends AppCompatActivity {
             String note = etItemNote.getText().toString().trim();
 
             if (!name.isEmpty()) {
-                Product product = new Product();
-                product.name = name;
-                product.notes = note;
-                product.purchased = false;
-
-                createProductOnServer(product);
+                // Сначала в локальную базу и очередь, сервер получит изменение при синхронизации
+                repository.addItem(name, note);
+                etItemName.setText("");
+                etItemNote.setText("");
             } else {
                 Toast.makeText(this, "Введите название товара", Toast.LENGTH_SHORT).show();
             }
         });
 
+        btnImport.setOnClickListener(v ->
+                importLauncher.launch(new String[]{"text/*", "application/json"}));
+
+        btnExport.setOnClickListener(v -> new AlertDialog.Builder(this)
+                .setTitle("Формат экспорта")
+                .setItems(new String[]{"CSV", "JSON"}, (dialog, which) -> {
+                    if (which == 0) {
+                        exportCsvLauncher.launch("shopping_list.csv");
+                    } else {
+                        exportJsonLauncher.launch("shopping_list.json");
+                    }
+                })
+                .show());
+
         // Обработчики кликов от адаптера
         adapter.setOnItemClickListener(new ShoppingItemAdapter.OnItemClickListener() {
             @Override
             public void onItemBoughtToggled(ShoppingItem item) {
-                updateProductOnServer(item.id, item.name, item.note, item.isBought);
+                repository.updateItem(item);
             }
 
             @Override
             public void onItemDeleted(ShoppingItem item) {
-                deleteProductOnServer(item.id);
+                repository.deleteItem(item);
             }
 
             @Override
@@ -102,153 +136,150 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
-    // === ЗАГРУЗКА СПИСКА ===
-    private void loadProductsFromServer() {
-        api.getProducts().enqueue(new Callback<ProductListResponse>() {
-            @Override
-            public void onResponse(Call<ProductListResponse> call, Response<ProductListResponse> response) {
-                Log.d("API", "Response code: " + response.code());
-
-                if (response.isSuccessful() && response.body() != null && response.body().success) {
-                    ProductListResponse apiResponse = response.body();
-                    Product[] products = apiResponse.data;
-
-                    if (products != null) {
-                        List<ShoppingItem> items = new ArrayList<>();
-                        for (Product p : products) {
-                            ShoppingItem item = new ShoppingItem();
-                            item.id = p.id;
-                            item.name = p.name;
-                            item.note = p.notes;
-                            item.isBought = p.purchased;
-
-                            // Передаем даты с сервера
-                            if (p.created_at != null) {
-                                item.createdAt = p.created_at;
-                            } else {
-                                item.createdAt = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
-                                        .format(new java.util.Date());
-                            }
-
-                            // Используем updated_at если есть, иначе created_at
-                            if (p.updated_at != null) {
-                                item.updatedAt = p.updated_at;
-                            } else if (p.created_at != null) {
-                                item.updatedAt = p.created_at;
-                            } else {
-                                item.updatedAt = item.createdAt;
-                            }
-
-                            items.add(item);
-                        }
-                        adapter.setItems(items);
-                        Toast.makeText(MainActivity.this, "Загружено " + items.size() + " товаров", Toast.LENGTH_SHORT).show();
-                        Log.d("API", "Successfully loaded " + items.size() + " items");
-                    } else {
-                        Toast.makeText(MainActivity.this, "Нет товаров", Toast.LENGTH_SHORT).show();
-                    }
-                } else {
-                    try {
-                        String errorBody = response.errorBody() != null ? response.errorBody().string() : "null";
-                        Log.e("API", "Ошибка загрузки: " + response.code() + " | " + errorBody);
-                        Toast.makeText(MainActivity.this, "Ошибка загрузки: " + response.code(), Toast.LENGTH_SHORT).show();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Сервер мог стать доступным без смены сети
+        repository.sync();
+    }
 
-            @Override
-            public void onFailure(Call<ProductListResponse> call, Throwable t) {
-                Toast.makeText(MainActivity.this, "Нет связи с сервером: " + t.getMessage(), Toast.LENGTH_LONG).show();
-                Log.e("API", "Сетевая ошибка: " + t.getMessage());
-                t.printStackTrace();
-            }
-        });
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        repository.setListener(null);
     }
 
-    // === ДОБАВЛЕНИЕ ТОВАРА ===
-    private void createProductOnServer(Product product) {
-        api.createProduct(product).enqueue(new Callback<ProductResponse>() {
-            @Override
-            public void onResponse(Call<ProductResponse> call, Response<ProductResponse> response) {
-                Log.d("API", "Create response code: " + response.code());
-
-                if (response.isSuccessful() && response.body() != null && response.body().success) {
-                    Product createdProduct = response.body().data;
-                    etItemName.setText("");
-                    etItemNote.setText("");
-                    Toast.makeText(MainActivity.this, "Товар добавлен: " + createdProduct.name, Toast.LENGTH_SHORT).show();
-                    loadProductsFromServer(); // Обновить список
-                } else {
-                    try {
-                        String errorBody = response.errorBody() != null ? response.errorBody().string() : "null";
-                        Log.e("API", "Ошибка добавления: " + response.code() + " | " + errorBody);
-                        Toast.makeText(MainActivity.this, "Ошибка: " + response.code(), Toast.LENGTH_SHORT).show();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
+    // === СПИСОК ИЗ ЛОКАЛЬНОЙ БАЗЫ ===
+    @Override
+    public void onItemsLoaded(List<ShoppingItem> items) {
+        adapter.setItems(items);
+    }
 
-            @Override
-            public void onFailure(Call<ProductResponse> call, Throwable t) {
-                Toast.makeText(MainActivity.this, "Сетевая ошибка при добавлении", Toast.LENGTH_SHORT).show();
-                Log.e("API", "Ошибка сети: " + t.getMessage());
-                t.printStackTrace();
+    // === РЕЗУЛЬТАТ СИНХРОНИЗАЦИИ ===
+    @Override
+    public void onSyncFinished(OutboxReplayer.Result result) {
+        if (!result.rejected.isEmpty()) {
+            showRejectedDialog(result.rejected);
+        }
+
+        if (result.success) {
+            if (offline) {
+                Toast.makeText(this, "Связь восстановлена, изменения отправлены", Toast.LENGTH_SHORT).show();
             }
-        });
+            offline = false;
+        } else {
+            // Сообщаем один раз, а не на каждое изменение без связи
+            if (!offline) {
+                Toast.makeText(this, result.error + ". Изменения сохранены и будут отправлены позже",
+                        Toast.LENGTH_LONG).show();
+            }
+            offline = true;
+        }
     }
 
-    // === ОБНОВЛЕНИЕ ТОВАРА ===
-    private void updateProductOnServer(int id, String name, String notes, boolean purchased) {
-        Product product = new Product();
-        product.id = id;
-        product.name = name;
-        product.notes = notes;
-        product.purchased = purchased;
+    // Сервер окончательно отказал - товар исчезнет из списка при обновлении, предупреждаем
+    private void showRejectedDialog(List<String> rejected) {
+        StringBuilder message = new StringBuilder();
+        int shown = Math.min(rejected.size(), MAX_REJECTED_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            message.append("• ").append(rejected.get(i)).append('\n');
+        }
+        if (rejected.size() > shown) {
+            message.append("…и еще ").append(rejected.size() - shown);
+        }
 
-        api.updateProduct(id, product).enqueue(new Callback<ProductResponse>() {
-            @Override
-            public void onResponse(Call<ProductResponse> call, Response<ProductResponse> response) {
-                if (response.isSuccessful() && response.body() != null && response.body().success) {
-                    Log.d("API", "Товар обновлен: " + id);
-                } else {
-                    Log.e("API", "Ошибка обновления: " + response.code());
-                }
-                loadProductsFromServer(); // Синхронизировать состояние
-            }
+        new AlertDialog.Builder(this)
+                .setTitle("Сервер не принял изменения: " + rejected.size())
+                .setMessage(message.toString().trim())
+                .setPositiveButton("OK", null)
+                .show();
+    }
 
-            @Override
-            public void onFailure(Call<ProductResponse> call, Throwable t) {
-                Log.e("API", "Сетевая ошибка при обновлении: " + t.getMessage());
-                t.printStackTrace();
-                loadProductsFromServer(); // Вернуть исходное состояние
-            }
-        });
+    // === ИМПОРТ И ЭКСПОРТ ===
+    private void importFromUri(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        if (repository.isTransferRunning()) {
+            Toast.makeText(this, "Импорт или экспорт уже выполняется", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        InputStream in;
+        try {
+            in = getContentResolver().openInputStream(uri);
+        } catch (FileNotFoundException e) {
+            Toast.makeText(this, "Не удалось открыть файл", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (in == null) {
+            return;
+        }
+
+        if (!repository.importList(in)) {
+            Toast.makeText(this, "Импорт или экспорт уже выполняется", Toast.LENGTH_SHORT).show();
+        }
     }
 
-    // === УДАЛЕНИЕ ТОВАРА ===
-    private void deleteProductOnServer(int id) {
-        api.deleteProduct(id).enqueue(new Callback<BasicResponse>() {
-            @Override
-            public void onResponse(Call<BasicResponse> call, Response<BasicResponse> response) {
-                if (response.isSuccessful() && response.body() != null && response.body().success) {
-                    Toast.makeText(MainActivity.this, "Товар удален", Toast.LENGTH_SHORT).show();
-                    loadProductsFromServer();
-                } else {
-                    Log.e("API", "Ошибка удаления: " + response.code());
-                    loadProductsFromServer();
-                }
-            }
+    private void exportToUri(Uri uri, ListTransfer.Format format) {
+        if (uri == null) {
+            return;
+        }
+        if (repository.isTransferRunning()) {
+            Toast.makeText(this, "Импорт или экспорт уже выполняется", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        OutputStream out;
+        try {
+            out = getContentResolver().openOutputStream(uri);
+        } catch (FileNotFoundException e) {
+            Toast.makeText(this, "Не удалось создать файл", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (out == null) {
+            return;
+        }
+
+        if (!repository.exportList(out, format)) {
+            Toast.makeText(this, "Импорт или экспорт уже выполняется", Toast.LENGTH_SHORT).show();
+        }
+    }
 
-            @Override
-            public void onFailure(Call<BasicResponse> call, Throwable t) {
-                Log.e("API", "Сетевая ошибка при удалении: " + t.getMessage());
-                t.printStackTrace();
-                loadProductsFromServer();
+    // Состояние приходит и после поворота экрана: новая Activity продолжает показывать ход
+    @Override
+    public void onTransferChanged(ShoppingRepository.TransferState state) {
+        if (!state.finished) {
+            setTransferRunning(true);
+            String status = (state.importing ? "Импортировано: " : "Экспортировано: ") + state.processed;
+            if (state.skipped > 0) {
+                status += ", пропущено: " + state.skipped;
             }
-        });
+            tvTransferStatus.setText(status);
+            return;
+        }
+
+        setTransferRunning(false);
+        String message;
+        if (state.error != null && state.importing && state.processed > 0) {
+            // Записанные пачки остаются в списке: повторный импорт того же файла их продублирует
+            message = state.error + "\nДо ошибки импортировано товаров: " + state.processed;
+        } else if (state.error != null) {
+            message = state.error;
+        } else {
+            message = (state.importing ? "Импортировано товаров: " : "Экспортировано товаров: ") + state.processed;
+        }
+        if (state.skipped > 0) {
+            // Пустые названия и слишком длинные поля сервер все равно не примет
+            message += "\nПропущено строк с ошибками: " + state.skipped;
+        }
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+        repository.clearTransfer();
+    }
+
+    private void setTransferRunning(boolean running) {
+        btnImport.setEnabled(!running);
+        btnExport.setEnabled(!running);
+        tvTransferStatus.setText("");
+        tvTransferStatus.setVisibility(running ? View.VISIBLE : View.GONE);
     }
 
     // === ДИАЛОГ РЕДАКТИРОВАНИЯ ЗАМЕТКИ ===
@@ -264,7 +295,8 @@ public class MainActivity extends AppCompatActivity {
                 .setView(editText)
                 .setPositiveButton("Сохранить", (dialog, which) -> {
                     String newNote = editText.getText().toString().trim();
-                    updateProductOnServer(item.id, item.name, newNote, item.isBought);
+                    item.note = newNote;
+                    repository.updateItem(item);
                 })
                 .setNegativeButton("Отмена", null)
                 .show();
@@ -0,0 +1,25 @@
+package com.example.shoppinglist2;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import java.util.List;
+
+@Dao
+public interface OutboxDao {
+    @Insert
+    long insert(OutboxEntry entry);
+
+    @Insert
+    void insertAll(List<OutboxEntry> entries);
+
+    // Самые старые изменения первыми - сервер должен применить их по порядку
+    @Query("SELECT * FROM outbox ORDER BY id ASC LIMIT :limit")
+    List<OutboxEntry> getBatch(int limit);
+
+    @Query("DELETE FROM outbox WHERE id <= :lastId")
+    void deleteUpTo(long lastId);
+
+    @Query("SELECT COUNT(*) FROM outbox")
+    int count();
+}
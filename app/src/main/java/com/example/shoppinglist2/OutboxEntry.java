@@ -0,0 +1,80 @@
+package com.example.shoppinglist2;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+import java.util.UUID;
+
+// Изменение, которое еще не подтверждено сервером.
+// Порядок отправки определяется автоинкрементным id.
+@Entity(tableName = "outbox", indices = {@Index(value = "opKey", unique = true)})
+public class OutboxEntry {
+    public static final String ACTION_CREATE = "create";
+    public static final String ACTION_UPDATE = "update";
+    public static final String ACTION_DELETE = "delete";
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    // Ключ идемпотентности: сервер не применит одно изменение дважды
+    public String opKey;
+    public String action;
+
+    // ID товара на сервере, если он уже известен
+    public Integer productId;
+    // Ключ операции создания - для товаров, созданных без связи
+    public String targetKey;
+
+    public String name;
+    public String note;
+    public boolean isBought;
+    public String createdAt;
+
+    // ✅ Обязательный конструктор без параметров
+    public OutboxEntry() {}
+
+    public static OutboxEntry create(ShoppingItem item) {
+        OutboxEntry entry = of(ACTION_CREATE, item);
+        // Ключ создания совпадает с ключом товара, чтобы на него можно было сослаться
+        entry.opKey = item.clientKey;
+        return entry;
+    }
+
+    public static OutboxEntry update(ShoppingItem item) {
+        return of(ACTION_UPDATE, item);
+    }
+
+    public static OutboxEntry delete(ShoppingItem item) {
+        return of(ACTION_DELETE, item);
+    }
+
+    private static OutboxEntry of(String action, ShoppingItem item) {
+        OutboxEntry entry = new OutboxEntry();
+        entry.opKey = UUID.randomUUID().toString();
+        entry.action = action;
+        if (item.isSynced()) {
+            entry.productId = item.id;
+        } else {
+            entry.targetKey = item.clientKey;
+        }
+        entry.name = item.name;
+        entry.note = item.note;
+        entry.isBought = item.isBought;
+        entry.createdAt = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
+                .format(new java.util.Date());
+        return entry;
+    }
+
+    // Представление для отправки на сервер
+    public SyncChange toChange() {
+        SyncChange change = new SyncChange();
+        change.key = opKey;
+        change.action = action;
+        change.id = productId;
+        change.target_key = targetKey;
+        change.name = name;
+        change.notes = note;
+        change.purchased = isBought;
+        return change;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.shoppinglist2;
+
+import android.util.Log;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import retrofit2.Response;
+
+// Отправляет очередь изменений на сервер пачками через /api/sync.
+// Вызывается только из фонового потока: запросы выполняются синхронно.
+public class OutboxReplayer {
+    // Пачка достаточно большая, чтобы импорт целого списка ушел за несколько запросов
+    static final int BATCH_SIZE = 500;
+
+    // Окончательные ответы сервера: повторная отправка уже ничего не изменит.
+    // 'rejected' - отказ валидации; временные сбои сервер отдает кодом 5xx.
+    static final Set<String> FINAL_STATUSES = new HashSet<>(
+            Arrays.asList("applied", "duplicate", "not_found", "rejected"));
+
+    private final AppDatabase db;
+    private final ShoppingApi api;
+
+    public OutboxReplayer(AppDatabase db, ShoppingApi api) {
+        this.db = db;
+        this.api = api;
+    }
+
+    // Результат одного прохода по очереди
+    public static class Result {
+        public final boolean success;
+        public final int sent;
+        public final String error;
+        // Изменения, которые сервер окончательно отклонил: "название: причина"
+        public final List<String> rejected;
+        // Товары, которых раньше не было на устройстве (добавлены с других устройств)
+        public final List<ShoppingItem> received;
+
+        private Result(boolean success, int sent, String error, List<String> rejected,
+                       List<ShoppingItem> received) {
+            this.success = success;
+            this.sent = sent;
+            this.error = error;
+            this.rejected = Collections.unmodifiableList(rejected);
+            this.received = Collections.unmodifiableList(received);
+        }
+
+        private static Result failure(int sent, String error, List<String> rejected) {
+            return new Result(false, sent, error, rejected, Collections.<ShoppingItem>emptyList());
+        }
+    }
+
+    // Отправить все накопленные изменения и обновить локальный список с сервера.
+    // При ошибке изменения остаются в очереди и будут отправлены при следующем вызове.
+    public Result drain() {
+        OutboxDao outboxDao = db.outboxDao();
+        ShoppingItemDao itemDao = db.shoppingItemDao();
+        int sent = 0;
+        List<String> rejected = new ArrayList<>();
+
+        while (true) {
+            List<OutboxEntry> batch = outboxDao.getBatch(BATCH_SIZE);
+            List<SyncChange> changes = new ArrayList<>();
+            for (OutboxEntry entry : batch) {
+                changes.add(entry.toChange());
+            }
+
+            // Полный список нужен только с последней пачкой, промежуточные идут без него
+            boolean lastBatch = batch.size() < BATCH_SIZE;
+
+            SyncResponse body;
+            try {
+                Response<SyncResponse> response = api.sync(new SyncRequest(changes, lastBatch)).execute();
+                Log.d("SYNC", "Sync response code: " + response.code() + ", changes: " + changes.size());
+
+                body = response.body();
+                if (!response.isSuccessful() || body == null || !body.success) {
+                    return Result.failure(sent, "Ошибка синхронизации: " + response.code(), rejected);
+                }
+            } catch (IOException e) {
+                Log.e("SYNC", "Сетевая ошибка: " + e.getMessage());
+                return Result.failure(sent, "Нет связи с сервером", rejected);
+            }
+
+            // Удаляем из очереди только изменения с окончательным ответом сервера
+            Map<String, SyncResult> results = resultsByKey(body.applied_changes);
+            int acknowledged = acknowledgedCount(batch, results);
+            // clientKey созданного товара -> id на сервере
+            final Map<String, Integer> serverIds = new HashMap<>();
+            for (int i = 0; i < acknowledged; i++) {
+                OutboxEntry entry = batch.get(i);
+                SyncResult result = results.get(entry.opKey);
+                if ("rejected".equals(result.status)) {
+                    Log.e("SYNC", "Сервер отклонил изменение " + entry.opKey + ": " + result.error);
+                    rejected.add(entry.name + ": " + (result.error != null ? result.error : "отклонено сервером"));
+                } else if (OutboxEntry.ACTION_CREATE.equals(entry.action) && result.id != null
+                        && !"not_found".equals(result.status)) {
+                    serverIds.put(entry.opKey, result.id);
+                }
+            }
+            sent += acknowledged;
+
+            final boolean complete = acknowledged == batch.size();
+            final boolean refresh = complete && lastBatch;
+            final long ackedId = acknowledged > 0 ? batch.get(acknowledged - 1).id : 0;
+            final List<ShoppingItem> items = new ArrayList<>();
+            final List<ShoppingItem> received = new ArrayList<>();
+            if (refresh && body.data != null) {
+                for (Product p : body.data) {
+                    items.add(ShoppingItem.fromProduct(p));
+                }
+            }
+
+            final boolean[] refreshed = {false};
+            db.runInTransaction(() -> {
+                // id с сервера записывается вместе с удалением из очереди: иначе после
+                // сбоя между ними товар остался бы с временным id и при следующем
+                // обновлении считался бы пришедшим с другого устройства
+                for (Map.Entry<String, Integer> e : serverIds.entrySet()) {
+                    itemDao.assignServerId(e.getKey(), e.getValue());
+                }
+                if (ackedId > 0) {
+                    outboxDao.deleteUpTo(ackedId);
+                }
+                // Состояние сервера можно принять, только если локально не осталось
+                // неотправленных изменений, иначе они пропадут с экрана
+                if (refresh && outboxDao.count() == 0) {
+                    Set<Integer> localIds = new HashSet<>(itemDao.getAllIds());
+                    for (ShoppingItem item : items) {
+                        if (!localIds.contains(item.id)) {
+                            received.add(item);
+                        }
+                    }
+                    itemDao.deleteAll();
+                    itemDao.insertAll(items);
+                    refreshed[0] = true;
+                }
+            });
+
+            if (!complete) {
+                Log.e("SYNC", "Сервер подтвердил " + acknowledged + " из " + batch.size() + " изменений");
+                return Result.failure(sent, "Сервер подтвердил не все изменения", rejected);
+            }
+            if (refreshed[0]) {
+                Log.d("SYNC", "Synced " + sent + " changes, loaded " + items.size() + " items");
+                return new Result(true, sent, null, rejected, received);
+            }
+        }
+    }
+
+    static Map<String, SyncResult> resultsByKey(List<SyncResult> results) {
+        Map<String, SyncResult> byKey = new HashMap<>();
+        if (results != null) {
+            for (SyncResult result : results) {
+                if (result.key != null) {
+                    byKey.put(result.key, result);
+                }
+            }
+        }
+        return byKey;
+    }
+
+    // Сколько изменений с начала пачки можно удалить из очереди.
+    // Считаются только идущие подряд изменения с окончательным статусом,
+    // чтобы остальные ушли повторно в прежнем порядке.
+    static int acknowledgedCount(List<OutboxEntry> batch, Map<String, SyncResult> results) {
+        int count = 0;
+        for (OutboxEntry entry : batch) {
+            SyncResult result = results.get(entry.opKey);
+            if (result == null || !FINAL_STATUSES.contains(result.status)) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.shoppinglist2;
+
+// Класс для ответа со списком товаров
+class ProductListResponse {
+    public boolean success;
+    public int count;
+    public Product[] data;
+    public String timestamp;
+}
@@ -0,0 +1,8 @@
+package com.example.shoppinglist2;
+
+// Класс для ответа с одним товаром
+class ProductResponse {
+    public boolean success;
+    public String message;
+    public Product data;
+}
@@ -1,6 +1,5 @@
 package com.example.shoppinglist2;
 
-import java.util.List;
 import retrofit2.Call;
 import retrofit2.http.*;
 
@@ -16,25 +15,7 @@ public interface ShoppingApi {
 
     @DELETE("api/products/{id}")
     Call<BasicResponse> deleteProduct(@Path("id") int id);
-}
-
-// Класс для ответа со списком товаров
-class ProductListResponse {
-    public boolean success;
-    public int count;
-    public Product[] data;
-    public String timestamp;
-}
 
-// Класс для ответа с одним товаром
-class ProductResponse {
-    public boolean success;
-    public String message;
-    public Product data;
+    @POST("api/sync")
+    Call<SyncResponse> sync(@Body SyncRequest request);
 }
-
-// Класс для простых ответов
-class BasicResponse {
-    public boolean success;
-    public String message;
-}
\ No newline at end of file
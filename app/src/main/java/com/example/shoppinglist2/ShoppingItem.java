@@ -13,6 +13,8 @@ public class ShoppingItem {
     public boolean isBought;
     public String createdAt;
     public String updatedAt;
+    // Ключ операции создания; у товаров, пришедших с сервера, равен null
+    public String clientKey;
 
     // ✅ Обязательный конструктор без параметров
     public ShoppingItem() {}
@@ -23,4 +25,34 @@ public class ShoppingItem {
         this.note = note;
         this.isBought = isBought;
     }
+
+    // Преобразование товара, полученного с сервера
+    public static ShoppingItem fromProduct(Product p) {
+        ShoppingItem item = new ShoppingItem();
+        item.id = p.id;
+        item.name = p.name;
+        item.note = p.notes;
+        item.isBought = p.purchased;
+
+        // Передаем даты с сервера
+        if (p.created_at != null) {
+            item.createdAt = p.created_at;
+        } else {
+            item.createdAt = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
+                    .format(new java.util.Date());
+        }
+
+        // Используем updated_at если есть, иначе created_at
+        if (p.updated_at != null) {
+            item.updatedAt = p.updated_at;
+        } else {
+            item.updatedAt = item.createdAt;
+        }
+        return item;
+    }
+
+    // Товары, созданные без связи, получают отрицательный временный id
+    public boolean isSynced() {
+        return id > 0;
+    }
 }
\ No newline at end of file
@@ -15,12 +15,39 @@ public interface ShoppingItemDao {
     @Insert
     void insert(ShoppingItem item);
 
+    @Insert
+    void insertAll(List<ShoppingItem> items);
+
     @Update
     void update(ShoppingItem item);
 
     @Delete
     void delete(ShoppingItem item);
 
+    @Query("DELETE FROM shopping_items")
+    void deleteAll();
+
+    // Порядок как на сервере: сначала не купленные, новые сверху
+    @Query("SELECT * FROM shopping_items ORDER BY isBought, createdAt DESC")
+    List<ShoppingItem> getListItems();
+
+    @Query("SELECT COALESCE(MIN(id), 0) FROM shopping_items")
+    int getMinId();
+
+    // Постраничное чтение по id для экспорта: в памяти не больше одной страницы
+    @Query("SELECT * FROM shopping_items WHERE id > :afterId ORDER BY id LIMIT :limit")
+    List<ShoppingItem> getItemsAfter(int afterId, int limit);
+
+    @Query("SELECT id FROM shopping_items")
+    List<Integer> getAllIds();
+
+    // Товар, созданный без связи, получает id, выданный сервером
+    @Query("UPDATE shopping_items SET id = :serverId WHERE clientKey = :clientKey AND id < 0")
+    int assignServerId(String clientKey, int serverId);
+
+    @Query("SELECT COUNT(*) FROM shopping_items")
+    int count();
+
     // Дополнительные запросы если нужно
     @Query("SELECT * FROM shopping_items WHERE isBought = 0 ORDER BY createdAt DESC")
     List<ShoppingItem> getNotBoughtItems();
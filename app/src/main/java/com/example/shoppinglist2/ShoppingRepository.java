@@ -0,0 +1,363 @@
+package com.example.shoppinglist2;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+// Локальный список покупок с отложенной отправкой изменений на сервер.
+// Каждое изменение сначала записывается в Room вместе с записью в очереди
+// (outbox), поэтому работает без связи; сервер догоняет при синхронизации.
+public class ShoppingRepository {
+
+    public interface Listener {
+        void onItemsLoaded(List<ShoppingItem> items);
+        void onSyncFinished(OutboxReplayer.Result result);
+        void onTransferChanged(TransferState state);
+    }
+
+    // Ход импорта/экспорта. Хранится здесь, а не в Activity: после поворота экрана
+    // новая Activity получает текущее состояние в setListener.
+    public static class TransferState {
+        public final boolean importing;
+        public final boolean finished;
+        public final int processed;
+        // Строки файла, не прошедшие проверку (при экспорте всегда 0)
+        public final int skipped;
+        public final String error;
+
+        TransferState(boolean importing, boolean finished, int processed, int skipped, String error) {
+            this.importing = importing;
+            this.finished = finished;
+            this.processed = processed;
+            this.skipped = skipped;
+            this.error = error;
+        }
+    }
+
+    // === IP RASPBERRY PI ===
+    // ЗАМЕНИТЕ НА РЕАЛЬНЫЙ IP АДРЕС ВАШЕГО RASPBERRY PI!
+    // Пример: "http://192.168.1.100:5000/"
+    // Для эмулятора можно использовать "http://10.0.2.2:5000/"
+    private static final String BASE_URL = "http://10.0.2.2:5000/";
+
+    private static final String NAME_INDEX_FILE = "item_names.idx";
+    private static final long INDEX_SAVE_DELAY_MS = 2000;
+
+    private final Context appContext;
+    private final AppDatabase db;
+    private final OutboxReplayer replayer;
+    private final ItemNameIndex nameIndex = new ItemNameIndex();
+    private final File nameIndexFile;
+    private final ListTransfer transfer;
+
+    // Локальные записи и сеть в разных потоках: медленный сервер не тормозит список
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService syncExecutor = Executors.newSingleThreadExecutor();
+    // Индекс подсказок живет в своем потоке: загрузка и запись файла не задерживают
+    // изменения списка. Все изменения индекса идут сюда же, поэтому выполняются после загрузки.
+    private final ScheduledExecutorService indexExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean indexSaveScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean syncScheduled = new AtomicBoolean(false);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile Listener listener;
+    // null - перенос не выполняется; меняется только в главном потоке
+    private TransferState transferState;
+
+    private static volatile ShoppingRepository INSTANCE;
+
+    private ShoppingRepository(Context appContext, AppDatabase db, ShoppingApi api) {
+        this.appContext = appContext;
+        this.db = db;
+        this.replayer = new OutboxReplayer(db, api);
+        this.nameIndexFile = new File(appContext.getFilesDir(), NAME_INDEX_FILE);
+        this.transfer = new ListTransfer(db, nameIndex, indexExecutor);
+
+        // Индекс подсказок читается из файла; таблица сканируется только при первом запуске
+        indexExecutor.execute(() -> nameIndex.load(nameIndexFile, db.shoppingItemDao()));
+    }
+
+    // Один экземпляр на процесс: очередь не должна отправляться из двух потоков сразу.
+    // Создается и из Activity, и из SyncWorker, когда приложение закрыто.
+    public static ShoppingRepository getInstance(final Context context) {
+        if (INSTANCE == null) {
+            synchronized (ShoppingRepository.class) {
+                if (INSTANCE == null) {
+                    Retrofit retrofit = new Retrofit.Builder()
+                            .baseUrl(BASE_URL)
+                            .addConverterFactory(GsonConverterFactory.create())
+                            .build();
+                    INSTANCE = new ShoppingRepository(context.getApplicationContext(),
+                            AppDatabase.getDatabase(context), retrofit.create(ShoppingApi.class));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // Вызывается в главном потоке
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener != null && transferState != null) {
+            listener.onTransferChanged(transferState);
+        }
+    }
+
+    public ItemNameIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    // === ЧТЕНИЕ ===
+    public void loadItems() {
+        diskExecutor.execute(this::postItems);
+    }
+
+    // === ИЗМЕНЕНИЯ ===
+    public void addItem(String name, String note) {
+        ShoppingItem item = new ShoppingItem(name, note, false);
+        item.clientKey = UUID.randomUUID().toString();
+        item.createdAt = now();
+        item.updatedAt = item.createdAt;
+
+        diskExecutor.execute(() -> {
+            db.runInTransaction(() -> {
+                // Временный отрицательный id не пересекается с id сервера
+                item.id = Math.min(db.shoppingItemDao().getMinId(), 0) - 1;
+                db.shoppingItemDao().insert(item);
+                db.outboxDao().insert(OutboxEntry.create(item));
+            });
+            postItems();
+            scheduleSync();
+        });
+
+        long time = System.currentTimeMillis();
+        indexExecutor.execute(() -> nameIndex.record(item.name, item.note, time));
+        scheduleIndexSave();
+    }
+
+    public void updateItem(ShoppingItem item) {
+        item.updatedAt = now();
+
+        diskExecutor.execute(() -> {
+            db.runInTransaction(() -> {
+                db.shoppingItemDao().update(item);
+                db.outboxDao().insert(OutboxEntry.update(item));
+            });
+            postItems();
+            scheduleSync();
+        });
+    }
+
+    public void deleteItem(ShoppingItem item) {
+        diskExecutor.execute(() -> {
+            db.runInTransaction(() -> {
+                db.shoppingItemDao().delete(item);
+                db.outboxDao().insert(OutboxEntry.delete(item));
+            });
+            postItems();
+            scheduleSync();
+        });
+    }
+
+    // === ИМПОРТ И ЭКСПОРТ ===
+    // Одновременно выполняется только один перенос. Вызывается в главном потоке.
+    public boolean isTransferRunning() {
+        return transferState != null && !transferState.finished;
+    }
+
+    // Результат показан пользователю - состояние больше не нужно
+    public void clearTransfer() {
+        if (transferState != null && transferState.finished) {
+            transferState = null;
+        }
+    }
+
+    // Импортированные товары уходят на сервер через общую очередь большими пачками.
+    // Возвращает false, если перенос уже идет; поток тогда закрывается здесь же.
+    public boolean importList(InputStream in) {
+        if (isTransferRunning()) {
+            closeQuietly(in);
+            return false;
+        }
+        setTransferState(new TransferState(true, false, 0, 0, null));
+
+        diskExecutor.execute(() -> {
+            // Прогресс приходит после каждой записанной пачки: при ошибке эти товары
+            // уже в списке и в очереди, и пользователь должен об этом узнать
+            final int[] committed = {0, 0};
+            int total;
+            int skipped;
+            String error = null;
+            try {
+                ListTransfer.ImportResult result = transfer.importFrom(in, (processed, skippedSoFar) -> {
+                    committed[0] = processed;
+                    committed[1] = skippedSoFar;
+                    postTransfer(true, false, processed, skippedSoFar, null);
+                });
+                total = result.imported;
+                skipped = result.skipped;
+            } catch (IOException | RuntimeException e) {
+                Log.e("TRANSFER", "Ошибка импорта после " + committed[0] + " товаров: " + e.getMessage());
+                total = committed[0];
+                skipped = committed[1];
+                error = "Ошибка импорта: " + e.getMessage();
+            } finally {
+                closeQuietly(in);
+            }
+
+            // Часть пачек могла успеть записаться и до ошибки
+            scheduleIndexSave();
+            postItems();
+            scheduleSync();
+            postTransfer(true, true, total, skipped, error);
+        });
+        return true;
+    }
+
+    public boolean exportList(OutputStream out, ListTransfer.Format format) {
+        if (isTransferRunning()) {
+            closeQuietly(out);
+            return false;
+        }
+        setTransferState(new TransferState(false, false, 0, 0, null));
+
+        diskExecutor.execute(() -> {
+            int total = 0;
+            String error = null;
+            try {
+                total = transfer.exportTo(out, format,
+                        (processed, skipped) -> postTransfer(false, false, processed, skipped, null));
+            } catch (IOException | RuntimeException e) {
+                Log.e("TRANSFER", "Ошибка экспорта: " + e.getMessage());
+                error = "Ошибка экспорта: " + e.getMessage();
+            } finally {
+                closeQuietly(out);
+            }
+            postTransfer(false, true, total, 0, error);
+        });
+        return true;
+    }
+
+    private void postTransfer(boolean importing, boolean finished, int processed, int skipped, String error) {
+        TransferState state = new TransferState(importing, finished, processed, skipped, error);
+        mainHandler.post(() -> setTransferState(state));
+    }
+
+    private void setTransferState(TransferState state) {
+        transferState = state;
+        Listener l = listener;
+        if (l != null) {
+            l.onTransferChanged(state);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Данные уже записаны или прочитаны
+        }
+    }
+
+    // === СИНХРОНИЗАЦИЯ ===
+    // Изменение уже в очереди; отправку выполняет SyncWorker, как только есть сеть,
+    // даже если пользователь успел закрыть приложение
+    private void scheduleSync() {
+        SyncWorker.enqueue(appContext);
+    }
+
+    // Проверка сервера при открытии экрана.
+    // Повторные вызовы, пока проход еще не начался, объединяются в один.
+    public void sync() {
+        if (!syncScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        syncExecutor.execute(() -> {
+            syncScheduled.set(false);
+            if (!drainOutbox()) {
+                // Без связи или при сбое сервера очередь дождется сети в WorkManager
+                scheduleSync();
+            }
+        });
+    }
+
+    // Для SyncWorker: тот же проход в потоке синхронизации, чтобы очередь не
+    // отправлялась двумя потоками сразу. false - WorkManager повторит позже.
+    boolean syncBlocking() {
+        try {
+            return syncExecutor.submit(this::drainOutbox).get();
+        } catch (ExecutionException e) {
+            Log.e("SYNC", "Ошибка синхронизации: " + e.getCause());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // true - все отправлено и очередь пуста. Изменение, записанное в конце прохода,
+    // не запускает SyncWorker, пока тот еще работает, поэтому очередь проверяется заново.
+    private boolean drainOutbox() {
+        OutboxReplayer.Result result = replayer.drain();
+        // После частичной отправки у созданных товаров уже могут быть id с сервера
+        if (result.success || result.sent > 0) {
+            postItems();
+        }
+        if (!result.received.isEmpty()) {
+            indexExecutor.execute(() -> nameIndex.recordAll(result.received));
+            scheduleIndexSave();
+        }
+        mainHandler.post(() -> {
+            Listener l = listener;
+            if (l != null) {
+                l.onSyncFinished(result);
+            }
+        });
+        return result.success && db.outboxDao().count() == 0;
+    }
+
+    // === ИНДЕКС ПОДСКАЗОК ===
+    // Файл индекса переписывается целиком, поэтому записи объединяются:
+    // серия добавлений за INDEX_SAVE_DELAY_MS сохраняется одной записью
+    private void scheduleIndexSave() {
+        if (!indexSaveScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        indexExecutor.schedule(() -> {
+            indexSaveScheduled.set(false);
+            nameIndex.save(nameIndexFile);
+        }, INDEX_SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void postItems() {
+        List<ShoppingItem> items = db.shoppingItemDao().getListItems();
+        mainHandler.post(() -> {
+            Listener l = listener;
+            if (l != null) {
+                l.onItemsLoaded(items);
+            }
+        });
+    }
+
+    private static String now() {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+    }
+}
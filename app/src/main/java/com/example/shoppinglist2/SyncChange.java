@@ -0,0 +1,12 @@
+package com.example.shoppinglist2;
+
+// Одно изменение из очереди клиента
+class SyncChange {
+    public String key;
+    public String action;
+    public Integer id;
+    public String target_key;
+    public String name;
+    public boolean purchased;
+    public String notes;
+}
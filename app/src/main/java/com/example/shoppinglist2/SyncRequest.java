@@ -0,0 +1,15 @@
+package com.example.shoppinglist2;
+
+import java.util.List;
+
+// Пачка изменений для синхронизации
+class SyncRequest {
+    public List<SyncChange> changes;
+    // false - не присылать список товаров в ответе
+    public boolean include_data;
+
+    SyncRequest(List<SyncChange> changes, boolean includeData) {
+        this.changes = changes;
+        this.include_data = includeData;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.shoppinglist2;
+
+import java.util.List;
+
+// Класс для ответа синхронизации
+class SyncResponse {
+    public boolean success;
+    public String message;
+    public Product[] data;
+    public List<SyncResult> applied_changes;
+    public String timestamp;
+}
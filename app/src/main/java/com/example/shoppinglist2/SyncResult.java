@@ -0,0 +1,11 @@
+package com.example.shoppinglist2;
+
+// Результат применения одного изменения на сервере
+class SyncResult {
+    public String key;
+    public String action;
+    public Integer id;
+    public String status;
+    // Причина отказа для статуса 'rejected'
+    public String error;
+}
@@ -0,0 +1,44 @@
+package com.example.shoppinglist2;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import java.util.concurrent.TimeUnit;
+
+// Отправка очереди изменений в фоне. WorkManager запускает ее, когда появляется сеть,
+// в том числе после закрытия приложения, и повторяет после сбоя.
+public class SyncWorker extends Worker {
+    private static final String WORK_NAME = "outbox_sync";
+    private static final long RETRY_DELAY_SECONDS = 30;
+
+    public SyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    // Уже запланированная отправка не дублируется: один проход забирает всю очередь
+    public static void enqueue(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SyncWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, RETRY_DELAY_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        ShoppingRepository repository = ShoppingRepository.getInstance(getApplicationContext());
+        return repository.syncBlocking() ? Result.success() : Result.retry();
+    }
+}
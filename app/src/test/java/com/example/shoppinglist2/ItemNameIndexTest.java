@@ -0,0 +1,117 @@
+package com.example.shoppinglist2;
+
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Индекс подсказок: ключи, порядок, последняя заметка и файл.
+ */
+public class ItemNameIndexTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void keys_ignoreCaseAndSurroundingSpaces() {
+        ItemNameIndex index = new ItemNameIndex();
+        index.record("Молоко", null, NOW);
+        index.record("  молоко ", null, NOW);
+        index.record("МОЛОКО", null, NOW);
+
+        assertEquals(Arrays.asList("МОЛОКО"), index.suggest(" мОл", 5));
+        assertEquals(Arrays.asList("МОЛОКО"), index.suggest("МОЛОКО", 5));
+    }
+
+    @Test
+    public void suggest_ordersByCount() {
+        ItemNameIndex index = new ItemNameIndex();
+        record(index, "Мука", 1, NOW);
+        record(index, "Молоко", 3, NOW);
+        record(index, "Масло", 2, NOW);
+
+        assertEquals(Arrays.asList("Молоко", "Масло", "Мука"), index.suggest("м", 5));
+        assertEquals(Arrays.asList("Молоко", "Масло"), index.suggest("м", 2));
+    }
+
+    @Test
+    public void suggest_olderPurchasesDecay() {
+        ItemNameIndex index = new ItemNameIndex();
+        // Три покупки 90 дней назад весят 3 * 0.5^3 = 0.375, одна вчерашняя - около 1
+        record(index, "Мед", 3, NOW - 90 * DAY);
+        record(index, "Майонез", 1, NOW - DAY);
+
+        assertEquals(Arrays.asList("Майонез", "Мед"), index.suggest("м", 5));
+    }
+
+    @Test
+    public void suggest_wideCachedPrefixFollowsNewRecords() {
+        ItemNameIndex index = new ItemNameIndex();
+        for (int i = 0; i < ItemNameIndex.SCAN_LIMIT * 2; i++) {
+            index.record("Товар " + i, null, NOW - DAY);
+        }
+        index.cacheFirstLetters();
+        record(index, "Творог", 2, NOW);
+
+        assertEquals("Творог", index.suggest("т", 5).get(0));
+        assertEquals("Творог", index.suggest("тв", 5).get(0));
+        assertEquals(5, index.suggest("т", 5).size());
+    }
+
+    @Test
+    public void lastNote_keepsMostRecentEvenIfOlderRecordArrivesLater() {
+        ItemNameIndex index = new ItemNameIndex();
+        index.record("Кофе", "Arabica", NOW);
+        index.record("Кофе", "Robusta", NOW - DAY);
+
+        assertEquals("Arabica", index.lastNote("кофе"));
+        assertNull(index.lastNote("Чай"));
+    }
+
+    @Test
+    public void saveAndRead_roundTrip() throws IOException {
+        ItemNameIndex index = new ItemNameIndex();
+        record(index, "Хлеб", 2, NOW);
+        index.record("Сыр", "Российский", NOW - DAY);
+        index.record("Соль", null, NOW - 2 * DAY);
+
+        File file = File.createTempFile("names", ".idx");
+        try {
+            index.save(file);
+
+            ItemNameIndex read = new ItemNameIndex();
+            assertEquals(3, read.readFrom(file));
+            assertEquals(Arrays.asList("Хлеб"), read.suggest("х", 5));
+            assertEquals(Arrays.asList("Сыр", "Соль"), read.suggest("с", 5));
+            assertEquals("Российский", read.lastNote("Сыр"));
+            assertNull(read.lastNote("Соль"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void read_wrongVersionFails() throws IOException {
+        File file = File.createTempFile("names", ".idx");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+                out.writeInt(999);
+                out.writeInt(0);
+            }
+            new ItemNameIndex().readFrom(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void record(ItemNameIndex index, String name, int times, long time) {
+        for (int i = 0; i < times; i++) {
+            index.record(name, null, time);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.shoppinglist2;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Разбор CSV и JSON при импорте, без базы данных.
+ */
+public class ListTransferTest {
+
+    // === CsvReader ===
+
+    @Test
+    public void csv_quotedComma() throws IOException {
+        List<List<String>> records = readCsv("\"Хлеб, черный\",2 шт\n");
+
+        assertEquals(1, records.size());
+        assertEquals(Arrays.asList("Хлеб, черный", "2 шт"), records.get(0));
+    }
+
+    @Test
+    public void csv_doubledQuotesInsideQuotes() throws IOException {
+        List<List<String>> records = readCsv("\"Сыр \"\"Российский\"\"\",\n");
+
+        assertEquals(Arrays.asList("Сыр \"Российский\"", ""), records.get(0));
+    }
+
+    @Test
+    public void csv_newlineInsideQuotes() throws IOException {
+        List<List<String>> records = readCsv("Молоко,\"2 пакета\nобезжиренное\"\nКофе,\n");
+
+        assertEquals(2, records.size());
+        assertEquals(Arrays.asList("Молоко", "2 пакета\nобезжиренное"), records.get(0));
+        assertEquals(Arrays.asList("Кофе", ""), records.get(1));
+    }
+
+    @Test
+    public void csv_crlfLineEndings() throws IOException {
+        List<List<String>> records = readCsv("a,b\r\nc,d\r\n");
+
+        assertEquals(2, records.size());
+        assertEquals(Arrays.asList("a", "b"), records.get(0));
+        assertEquals(Arrays.asList("c", "d"), records.get(1));
+    }
+
+    @Test
+    public void csv_blankLinesSkipped() throws IOException {
+        List<List<String>> records = readCsv("a\n\n\r\nb\n\n");
+
+        assertEquals(2, records.size());
+        assertEquals(Arrays.asList("a"), records.get(0));
+        assertEquals(Arrays.asList("b"), records.get(1));
+    }
+
+    @Test
+    public void csv_lastRecordWithoutNewline() throws IOException {
+        List<List<String>> records = readCsv("a,b\nc,\"d\"");
+
+        assertEquals(2, records.size());
+        assertEquals(Arrays.asList("c", "d"), records.get(1));
+    }
+
+    // === Импорт CSV ===
+
+    @Test
+    public void importCsv_bomBeforeHeader() throws IOException {
+        List<String[]> rows = parse("\uFEFFname,notes,purchased\r\nМолоко,2 пакета,true\r\n");
+
+        assertEquals(1, rows.size());
+        assertRow(rows.get(0), "Молоко", "2 пакета", "true", null);
+    }
+
+    @Test
+    public void importCsv_headerInAnyOrder() throws IOException {
+        List<String[]> rows = parse("notes,created_at,name\nВзять 2,2024-01-01 10:00:00,Молоко\n");
+
+        assertEquals(1, rows.size());
+        assertRow(rows.get(0), "Молоко", "Взять 2", "false", "2024-01-01 10:00:00");
+    }
+
+    @Test
+    public void importCsv_withoutHeader() throws IOException {
+        List<String[]> rows = parse("Хлеб,,1\nЯйца,10 штук,нет\n");
+
+        assertEquals(2, rows.size());
+        assertRow(rows.get(0), "Хлеб", null, "true", null);
+        assertRow(rows.get(1), "Яйца", "10 штук", "false", null);
+    }
+
+    // === Импорт JSON ===
+
+    @Test
+    public void importJson_plainArray() throws IOException {
+        List<String[]> rows = parse("[{\"name\": \"Кофе\", \"notes\": \"Arabica\", \"purchased\": true}]");
+
+        assertEquals(1, rows.size());
+        assertRow(rows.get(0), "Кофе", "Arabica", "true", null);
+    }
+
+    @Test
+    public void importJson_serverResponseWithData() throws IOException {
+        String json = "{\"success\": true, \"count\": 2, \"data\": ["
+                + "{\"id\": 1, \"name\": \"Молоко\", \"notes\": null, \"purchased\": false,"
+                + " \"created_at\": \"2024-01-01 10:00:00\"},"
+                + "{\"id\": 2, \"name\": \"Хлеб\", \"notes\": \"Черный\", \"purchased\": true}"
+                + "], \"timestamp\": \"2024-01-01T10:00:00\"}";
+        List<String[]> rows = parse(json);
+
+        assertEquals(2, rows.size());
+        assertRow(rows.get(0), "Молоко", null, "false", "2024-01-01 10:00:00");
+        assertRow(rows.get(1), "Хлеб", "Черный", "true", null);
+    }
+
+    @Test
+    public void importJson_purchasedAsNumberOrString() throws IOException {
+        Rows rows = parseRows("[{\"name\": \"Хлеб\", \"purchased\": 1},"
+                + "{\"name\": \"Соль\", \"purchased\": \"true\"},"
+                + "{\"name\": \"Сыр\", \"purchased\": \"да\"},"
+                + "{\"name\": \"Мед\", \"purchased\": 0}]");
+
+        assertEquals(4, rows.rows.size());
+        assertEquals("true", rows.rows.get(0)[2]);
+        assertEquals("true", rows.rows.get(1)[2]);
+        assertEquals("true", rows.rows.get(2)[2]);
+        assertEquals("false", rows.rows.get(3)[2]);
+        assertEquals(0, rows.skipped);
+    }
+
+    @Test
+    public void importJson_badValueSkipsOnlyThatRow() throws IOException {
+        Rows rows = parseRows("[{\"name\": \"Хлеб\", \"purchased\": \"может быть\"},"
+                + "{\"name\": {\"ru\": \"Соль\"}},"
+                + "42,"
+                + "{\"name\": \"Сыр\", \"purchased\": [true]},"
+                + "{\"name\": \"Мед\"}]");
+
+        assertEquals(1, rows.rows.size());
+        assertRow(rows.rows.get(0), "Мед", null, "false", null);
+        assertEquals(4, rows.skipped);
+    }
+
+    @Test
+    public void importCsv_badPurchasedSkipsRow() throws IOException {
+        Rows rows = parseRows("name,purchased\nХлеб,может быть\nСоль,\n");
+
+        assertEquals(1, rows.rows.size());
+        assertRow(rows.rows.get(0), "Соль", null, "false", null);
+        assertEquals(1, rows.skipped);
+    }
+
+    // === Проверка строк ===
+
+    @Test
+    public void isValid_sameLimitsAsServer() {
+        assertTrue(ListTransfer.isValid(repeat('а', ListTransfer.MAX_NAME_LENGTH), ""));
+        assertFalse(ListTransfer.isValid(repeat('а', ListTransfer.MAX_NAME_LENGTH + 1), ""));
+        assertTrue(ListTransfer.isValid("Хлеб", repeat('б', ListTransfer.MAX_NOTES_LENGTH)));
+        assertFalse(ListTransfer.isValid("Хлеб", repeat('б', ListTransfer.MAX_NOTES_LENGTH + 1)));
+        assertFalse(ListTransfer.isValid("", ""));
+    }
+
+    private static List<List<String>> readCsv(String text) throws IOException {
+        ListTransfer.CsvReader reader = new ListTransfer.CsvReader(new BufferedReader(new StringReader(text)));
+        List<List<String>> records = new ArrayList<>();
+        List<String> record;
+        while ((record = reader.readRecord()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static List<String[]> parse(String text) throws IOException {
+        Rows rows = parseRows(text);
+        assertEquals(0, rows.skipped);
+        return rows.rows;
+    }
+
+    private static Rows parseRows(String text) throws IOException {
+        Rows rows = new Rows();
+        ListTransfer.parse(new BufferedReader(new StringReader(text)), rows);
+        return rows;
+    }
+
+    // Разобранные строки и число пропущенных
+    private static class Rows implements ListTransfer.RowSink {
+        final List<String[]> rows = new ArrayList<>();
+        int skipped = 0;
+
+        @Override
+        public void add(String name, String notes, boolean purchased, String createdAt) {
+            rows.add(new String[]{name, notes, String.valueOf(purchased), createdAt});
+        }
+
+        @Override
+        public void skip() {
+            skipped++;
+        }
+    }
+
+    private static void assertRow(String[] row, String name, String notes, String purchased, String createdAt) {
+        assertArrayEquals(new String[]{name, notes, purchased, createdAt}, row);
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
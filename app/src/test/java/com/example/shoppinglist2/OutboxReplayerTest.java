@@ -0,0 +1,92 @@
+package com.example.shoppinglist2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Решение, какие изменения из пачки можно удалить из очереди после ответа сервера.
+ */
+public class OutboxReplayerTest {
+
+    @Test
+    public void allFinalStatuses_acknowledgeWholeBatch() {
+        List<OutboxEntry> batch = batch("k1", "k2", "k3", "k4");
+        List<SyncResult> results = Arrays.asList(
+                result("k1", "applied"),
+                result("k2", "duplicate"),
+                result("k3", "not_found"),
+                result("k4", "rejected"));
+
+        assertEquals(4, acknowledged(batch, results));
+    }
+
+    @Test
+    public void unknownStatus_stopsAtFirstNonFinal() {
+        List<OutboxEntry> batch = batch("k1", "k2", "k3");
+        List<SyncResult> results = Arrays.asList(
+                result("k1", "applied"),
+                result("k2", "error"),
+                result("k3", "applied"));
+
+        // k3 применен, но удалять его раньше k2 нельзя - порядок очереди сохраняется
+        assertEquals(1, acknowledged(batch, results));
+    }
+
+    @Test
+    public void missingKey_isNotAcknowledged() {
+        List<OutboxEntry> batch = batch("k1", "k2");
+        List<SyncResult> results = Collections.singletonList(result("k1", "applied"));
+
+        assertEquals(1, acknowledged(batch, results));
+    }
+
+    @Test
+    public void missingResults_acknowledgeNothing() {
+        assertEquals(0, acknowledged(batch("k1"), null));
+        assertEquals(0, acknowledged(batch("k1"), new ArrayList<>()));
+    }
+
+    @Test
+    public void resultsInAnotherOrder_areMatchedByKey() {
+        List<OutboxEntry> batch = batch("k1", "k2");
+        List<SyncResult> results = Arrays.asList(
+                result("k2", "applied"),
+                result("k1", "applied"));
+
+        assertEquals(2, acknowledged(batch, results));
+    }
+
+    @Test
+    public void emptyBatch_acknowledgesNothing() {
+        assertEquals(0, acknowledged(new ArrayList<>(), Collections.singletonList(result("k1", "applied"))));
+    }
+
+    private static int acknowledged(List<OutboxEntry> batch, List<SyncResult> results) {
+        return OutboxReplayer.acknowledgedCount(batch, OutboxReplayer.resultsByKey(results));
+    }
+
+    private static List<OutboxEntry> batch(String... keys) {
+        List<OutboxEntry> batch = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            OutboxEntry entry = new OutboxEntry();
+            entry.id = i + 1;
+            entry.opKey = keys[i];
+            entry.action = OutboxEntry.ACTION_UPDATE;
+            batch.add(entry);
+        }
+        return batch;
+    }
+
+    private static SyncResult result(String key, String status) {
+        SyncResult result = new SyncResult();
+        result.key = key;
+        result.status = status;
+        return result;
+    }
+}
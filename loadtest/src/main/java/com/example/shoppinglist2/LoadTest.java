@@ -0,0 +1,479 @@
+package com.example.shoppinglist2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import retrofit2.Call;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+// Нагрузочный тест API списка покупок: N виртуальных клиентов (телефонов семьи)
+// одновременно обращаются к серверу через тот же ShoppingApi, что и приложение.
+//
+// Запуск против локальной замены сервера:
+//   ./gradlew :loadtest:run --args="--clients 12 --duration 30"
+// Против Raspberry Pi:
+//   ./gradlew :loadtest:run --args="--url http://192.168.1.100:5000/ --clients 12"
+//
+// Параметры:
+//   --url URL            адрес сервера; без него запускается LocalStandInServer
+//   --clients N          число виртуальных клиентов (12)
+//   --duration SEC       длительность замера (30)
+//   --warmup SEC         разогрев, не входит в статистику (5)
+//   --mix get=50,...     доли операций get/create/update/delete/sync
+//   --threads virtual|N  виртуальные потоки (Java 21+) или пул из N потоков, N >= clients (virtual)
+//   --think-ms MS        пауза клиента между действиями (0)
+//   --refresh            после каждого изменения запрашивать весь список, как старый клиент
+//   --sync-batch N       изменений в одном запросе /api/sync (5)
+//   --retry-rate P       доля повторно отправленных пачек sync, 0..1 (0.1)
+//   --standin-latency MS задержка ответа локальной замены (0)
+public class LoadTest {
+
+    enum Op { GET, CREATE, UPDATE, DELETE, SYNC }
+
+    static final String GET_PRODUCTS = "GET /api/products";
+    static final String CREATE_PRODUCT = "POST /api/products";
+    static final String UPDATE_PRODUCT = "PUT /api/products/{id}";
+    static final String DELETE_PRODUCT = "DELETE /api/products/{id}";
+    static final String SYNC = "POST /api/sync";
+
+    // === ПАРАМЕТРЫ ===
+    static class Config {
+        String url;
+        int clients = 12;
+        int durationSec = 30;
+        int warmupSec = 5;
+        Map<Op, Integer> mix = parseMix("get=50,create=15,update=25,delete=5,sync=5");
+        String threads = "virtual";
+        long thinkMs = 0;
+        boolean refresh = false;
+        int syncBatch = 5;
+        double retryRate = 0.1;
+        long standInLatencyMs = 0;
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--refresh")) {
+                    config.refresh = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Нет значения для " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--url":
+                        config.url = value.endsWith("/") ? value : value + "/";
+                        break;
+                    case "--clients":
+                        config.clients = Integer.parseInt(value);
+                        break;
+                    case "--duration":
+                        config.durationSec = Integer.parseInt(value);
+                        break;
+                    case "--warmup":
+                        config.warmupSec = Integer.parseInt(value);
+                        break;
+                    case "--mix":
+                        config.mix = parseMix(value);
+                        break;
+                    case "--threads":
+                        config.threads = value;
+                        break;
+                    case "--think-ms":
+                        config.thinkMs = Long.parseLong(value);
+                        break;
+                    case "--sync-batch":
+                        config.syncBatch = Integer.parseInt(value);
+                        break;
+                    case "--retry-rate":
+                        config.retryRate = Double.parseDouble(value);
+                        break;
+                    case "--standin-latency":
+                        config.standInLatencyMs = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+                }
+            }
+            config.validate();
+            return config;
+        }
+
+        // Каждый клиент занимает поток на все время замера: при N < clients
+        // лишние клиенты ждут в очереди пула и не отправляют ни одного запроса
+        void validate() {
+            if (clients <= 0) {
+                throw new IllegalArgumentException("--clients должно быть больше нуля");
+            }
+            if (!threads.equals("virtual")) {
+                int poolSize;
+                try {
+                    poolSize = Integer.parseInt(threads);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("--threads: ожидается virtual или число, получено " + threads);
+                }
+                if (poolSize < clients) {
+                    throw new IllegalArgumentException("--threads " + poolSize + " меньше --clients " + clients
+                            + ": клиенты без потока не выполнят ни одного запроса");
+                }
+            }
+        }
+
+        static Map<Op, Integer> parseMix(String value) {
+            Map<Op, Integer> mix = new LinkedHashMap<>();
+            for (String part : value.split(",")) {
+                String[] kv = part.trim().split("=");
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException("Неверная доля операции: " + part);
+                }
+                int weight = Integer.parseInt(kv[1].trim());
+                if (weight > 0) {
+                    mix.put(Op.valueOf(kv[0].trim().toUpperCase()), weight);
+                }
+            }
+            if (mix.isEmpty()) {
+                throw new IllegalArgumentException("Пустой набор операций: " + value);
+            }
+            return mix;
+        }
+    }
+
+    // === СТАТИСТИКА ПО ENDPOINT ===
+    static class EndpointStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong clientErrors = new AtomicLong();
+        final AtomicLong serverErrors = new AtomicLong();
+    }
+
+    private final Config config;
+    private final ShoppingApi api;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    // Известные ID товаров, общие для всех клиентов: над ними идут update и delete
+    private final List<Integer> knownIds = new ArrayList<>();
+
+    private volatile long measureStartNanos;
+
+    LoadTest(Config config, String baseUrl) {
+        this.config = config;
+
+        // Соединений не меньше, чем клиентов, иначе замеряем ожидание пула, а не сервер
+        OkHttpClient client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(Math.max(5, config.clients), 5, TimeUnit.MINUTES))
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .build();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build();
+
+        api = retrofit.create(ShoppingApi.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config;
+        try {
+            config = Config.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        ExecutorService executor = createExecutor(config.threads, config.clients);
+        LocalStandInServer standIn = null;
+        String baseUrl = config.url;
+        if (baseUrl == null) {
+            // Свой пул сервера, не связанный с --threads: по потоку на клиента,
+            // у каждого клиента не больше одного запроса в полете
+            standIn = new LocalStandInServer(0, config.standInLatencyMs, config.clients);
+            standIn.start();
+            baseUrl = standIn.baseUrl();
+            System.out.println("✅ Локальная замена сервера: " + baseUrl);
+        }
+
+        try {
+            new LoadTest(config, baseUrl).run(executor);
+        } finally {
+            executor.shutdownNow();
+            if (standIn != null) {
+                standIn.stop();
+            }
+        }
+        System.exit(0);
+    }
+
+    // Виртуальные потоки, если среда их поддерживает (Java 21+), иначе ограниченный пул.
+    // Через рефлексию, чтобы инструмент собирался и на Java 17.
+    static ExecutorService createExecutor(String threads, int poolSize) {
+        if (threads.equals("virtual")) {
+            try {
+                return (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("⚠️ Виртуальные потоки недоступны, используем пул из " + poolSize + " потоков");
+                return Executors.newFixedThreadPool(poolSize);
+            }
+        }
+        return Executors.newFixedThreadPool(Integer.parseInt(threads));
+    }
+
+    void run(ExecutorService executor) throws InterruptedException {
+        System.out.println("🚀 Клиентов: " + config.clients + ", операции: " + config.mix
+                + ", разогрев " + config.warmupSec + " с, замер " + config.durationSec + " с"
+                + (config.refresh ? ", обновление списка после изменений" : ""));
+
+        // Начальный список ID для update/delete
+        seedKnownIds();
+
+        long now = System.nanoTime();
+        measureStartNanos = now + TimeUnit.SECONDS.toNanos(config.warmupSec);
+        long deadline = measureStartNanos + TimeUnit.SECONDS.toNanos(config.durationSec);
+
+        CountDownLatch done = new CountDownLatch(config.clients);
+        for (int i = 0; i < config.clients; i++) {
+            executor.execute(() -> {
+                try {
+                    runClient(deadline);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        // Запас на запросы, начатые перед самым концом
+        if (!done.await(config.warmupSec + config.durationSec + 60L, TimeUnit.SECONDS)) {
+            System.out.println("⚠️ Не все клиенты завершились вовремя");
+        }
+        long measuredNanos = Math.min(System.nanoTime(), deadline) - measureStartNanos;
+        printReport(measuredNanos);
+    }
+
+    private void seedKnownIds() {
+        try {
+            Response<ProductListResponse> response = api.getProducts().execute();
+            if (response.isSuccessful() && response.body() != null && response.body().data != null) {
+                for (Product p : response.body().data) {
+                    addKnownId(p.id);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("⚠️ Не удалось получить начальный список: " + e.getMessage());
+        }
+    }
+
+    // === ВИРТУАЛЬНЫЙ КЛИЕНТ ===
+    private void runClient(long deadline) {
+        Random random = ThreadLocalRandom.current();
+        int totalWeight = 0;
+        for (int weight : config.mix.values()) {
+            totalWeight += weight;
+        }
+        SyncRequest lastSync = null;
+
+        while (System.nanoTime() < deadline) {
+            Op op = pick(random, totalWeight);
+            switch (op) {
+                case GET:
+                    call(GET_PRODUCTS, api.getProducts());
+                    break;
+                case CREATE:
+                    createProduct(random);
+                    break;
+                case UPDATE:
+                    updateProduct(random);
+                    break;
+                case DELETE:
+                    deleteProduct();
+                    break;
+                case SYNC:
+                    // Часть пачек отправляется повторно - как после потерянного ответа
+                    SyncRequest request = lastSync != null && random.nextDouble() < config.retryRate
+                            ? lastSync
+                            : buildSyncRequest(random);
+                    syncChanges(request);
+                    lastSync = request;
+                    break;
+            }
+
+            if (config.refresh && op != Op.GET && op != Op.SYNC) {
+                call(GET_PRODUCTS, api.getProducts());
+            }
+            if (config.thinkMs > 0) {
+                try {
+                    Thread.sleep(config.thinkMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private Op pick(Random random, int totalWeight) {
+        int r = random.nextInt(totalWeight);
+        for (Map.Entry<Op, Integer> entry : config.mix.entrySet()) {
+            r -= entry.getValue();
+            if (r < 0) {
+                return entry.getKey();
+            }
+        }
+        return Op.GET;
+    }
+
+    private void createProduct(Random random) {
+        Product product = new Product("Товар " + random.nextInt(1000), false, "нагрузочный тест");
+        Response<ProductResponse> response = call(CREATE_PRODUCT, api.createProduct(product));
+        if (response != null && response.body() != null && response.body().data != null) {
+            addKnownId(response.body().data.id);
+        }
+    }
+
+    private void updateProduct(Random random) {
+        Integer id = randomKnownId(false);
+        if (id == null) {
+            createProduct(random);
+            return;
+        }
+        Product product = new Product("Товар " + id, random.nextBoolean(), "обновлено");
+        product.id = id;
+        call(UPDATE_PRODUCT, api.updateProduct(id, product));
+    }
+
+    private void deleteProduct() {
+        Integer id = randomKnownId(true);
+        if (id != null) {
+            call(DELETE_PRODUCT, api.deleteProduct(id));
+        }
+    }
+
+    private SyncRequest buildSyncRequest(Random random) {
+        List<SyncChange> changes = new ArrayList<>();
+        for (int i = 0; i < config.syncBatch; i++) {
+            SyncChange change = new SyncChange();
+            change.key = UUID.randomUUID().toString();
+            Integer id = random.nextBoolean() ? randomKnownId(false) : null;
+            if (id != null) {
+                change.action = "update";
+                change.id = id;
+                change.name = "Товар " + id;
+                change.purchased = random.nextBoolean();
+            } else {
+                change.action = "create";
+                change.name = "Товар " + random.nextInt(1000);
+            }
+            change.notes = "sync";
+            changes.add(change);
+        }
+        return new SyncRequest(changes, true);
+    }
+
+    private void syncChanges(SyncRequest request) {
+        Response<SyncResponse> response = call(SYNC, api.sync(request));
+        if (response == null || response.body() == null || response.body().applied_changes == null) {
+            return;
+        }
+        for (SyncResult result : response.body().applied_changes) {
+            if ("create".equals(result.action) && "applied".equals(result.status) && result.id != null) {
+                addKnownId(result.id);
+            }
+        }
+    }
+
+    // Выполнить запрос и записать задержку; null при сетевой ошибке
+    private <T> Response<T> call(String endpoint, Call<T> call) {
+        EndpointStats endpointStats = stats.computeIfAbsent(endpoint, k -> new EndpointStats());
+        long start = System.nanoTime();
+        Response<T> response = null;
+        try {
+            response = call.execute();
+        } catch (IOException e) {
+            // Считается ошибкой сервера ниже
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Разогрев не учитываем
+        if (start >= measureStartNanos) {
+            endpointStats.latency.record(elapsed);
+            if (response == null || response.code() >= 500) {
+                endpointStats.serverErrors.incrementAndGet();
+            } else if (response.code() >= 400) {
+                endpointStats.clientErrors.incrementAndGet();
+            }
+        }
+        return response;
+    }
+
+    private void addKnownId(int id) {
+        synchronized (knownIds) {
+            knownIds.add(id);
+        }
+    }
+
+    private Integer randomKnownId(boolean remove) {
+        synchronized (knownIds) {
+            if (knownIds.isEmpty()) {
+                return null;
+            }
+            int index = ThreadLocalRandom.current().nextInt(knownIds.size());
+            if (!remove) {
+                return knownIds.get(index);
+            }
+            // Удаление перестановкой с последним элементом - O(1)
+            Collections.swap(knownIds, index, knownIds.size() - 1);
+            return knownIds.remove(knownIds.size() - 1);
+        }
+    }
+
+    // === ОТЧЕТ ===
+    private void printReport(long measuredNanos) {
+        double seconds = measuredNanos / 1e9;
+        System.out.println();
+        System.out.println("=".repeat(104));
+        System.out.printf("%-26s %9s %10s %8s %8s %10s %10s %10s %10s%n",
+                "Endpoint", "Запросов", "Запр/с", "4xx", "Ошибки", "p50, мс", "p95, мс", "p99, мс", "max, мс");
+        System.out.println("-".repeat(104));
+
+        long totalRequests = 0;
+        List<String> endpoints = new ArrayList<>(stats.keySet());
+        Collections.sort(endpoints);
+        for (String endpoint : endpoints) {
+            EndpointStats s = stats.get(endpoint);
+            long count = s.latency.count();
+            totalRequests += count;
+            System.out.printf("%-26s %9d %10.1f %8d %8d %10.2f %10.2f %10.2f %10.2f%n",
+                    endpoint, count, count / seconds,
+                    s.clientErrors.get(), s.serverErrors.get(),
+                    s.latency.percentileMicros(50) / 1000.0,
+                    s.latency.percentileMicros(95) / 1000.0,
+                    s.latency.percentileMicros(99) / 1000.0,
+                    s.latency.maxMicros() / 1000.0);
+        }
+
+        System.out.println("-".repeat(104));
+        System.out.printf("Всего: %d запросов за %.1f с, %.1f запр/с%n",
+                totalRequests, seconds, totalRequests / seconds);
+        System.out.println("=".repeat(104));
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.shoppinglist2;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Локальная замена сервера на Raspberry Pi для нагрузочного теста.
+// Повторяет контракт VirtualBoxPRI/server.py (те же пути, поля и коды ответов),
+// хранит товары в памяти. Записи выполняются под одной блокировкой,
+// как у SQLite с единственным писателем, а чтения идут параллельно, как в режиме WAL;
+// задержка ответа настраивается.
+public class LocalStandInServer {
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    static {
+        // Без TCP_NODELAY встроенный HttpServer добавляет ~40 мс к ответу (Nagle + delayed ACK),
+        // и замена оказывается медленнее настоящего сервера
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final Gson gson = new Gson();
+    private final HttpServer server;
+    private final long latencyMs;
+    private final ExecutorService executor;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Product> products = new TreeMap<>();
+    private final Map<String, Integer> processedOps = new HashMap<>();
+    private int nextId = 1;
+
+    public LocalStandInServer(int port, long latencyMs, int threads) throws IOException {
+        this.latencyMs = latencyMs;
+        this.executor = Executors.newFixedThreadPool(threads);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/api/products", this::handleProducts);
+        server.createContext("/api/sync", this::handleSync);
+        server.setExecutor(executor);
+
+        // Те же тестовые данные, что и на настоящем сервере
+        String[][] seed = {
+                {"Молоко", "Взять 2 пакета"},
+                {"Хлеб", "Черный, бородинский"},
+                {"Яйца", "10 штук, категория С0"},
+                {"Кофе", "Молотый, Arabica"},
+                {"Сахар", "1 кг, коричневый"}
+        };
+        for (String[] s : seed) {
+            insert(s[0], false, s[1]);
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    // === /api/products и /api/products/{id} ===
+    private void handleProducts(HttpExchange exchange) throws IOException {
+        try {
+            simulateLatency();
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            Integer id = parseId(path);
+
+            if (id == null && method.equals("GET")) {
+                JsonObject body = new JsonObject();
+                lock.readLock().lock();
+                try {
+                    body.addProperty("count", products.size());
+                    body.add("data", gson.toJsonTree(new ArrayList<>(products.values())));
+                } finally {
+                    lock.readLock().unlock();
+                }
+                body.addProperty("success", true);
+                body.addProperty("timestamp", LocalDateTime.now().toString());
+                send(exchange, 200, body);
+
+            } else if (id == null && method.equals("POST")) {
+                Product input = gson.fromJson(readBody(exchange), Product.class);
+                if (input == null || input.name == null || input.name.trim().isEmpty()) {
+                    send(exchange, 400, error("Название товара обязательно"));
+                    return;
+                }
+                Product created = insert(input.name.trim(), input.purchased, input.notes);
+                JsonObject body = new JsonObject();
+                body.addProperty("success", true);
+                body.addProperty("message", "Товар успешно создан");
+                body.add("data", gson.toJsonTree(created));
+                send(exchange, 201, body);
+
+            } else if (id != null && method.equals("PUT")) {
+                Product input = gson.fromJson(readBody(exchange), Product.class);
+                boolean found;
+                lock.writeLock().lock();
+                try {
+                    found = update(id, input);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                send(exchange, found ? 200 : 404,
+                        found ? ok("Товар успешно обновлен") : error("Товар не найден"));
+
+            } else if (id != null && method.equals("DELETE")) {
+                boolean found;
+                lock.writeLock().lock();
+                try {
+                    found = products.remove(id) != null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                send(exchange, found ? 200 : 404,
+                        found ? ok("Товар успешно удален") : error("Товар не найден"));
+
+            } else {
+                send(exchange, 405, error("Метод не поддерживается"));
+            }
+        } catch (RuntimeException e) {
+            send(exchange, 500, error(String.valueOf(e.getMessage())));
+        }
+    }
+
+    // === /api/sync: пачка изменений с ключами идемпотентности ===
+    private void handleSync(HttpExchange exchange) throws IOException {
+        try {
+            simulateLatency();
+            JsonObject request = gson.fromJson(readBody(exchange), JsonObject.class);
+            JsonArray changes = request.has("changes") ? request.getAsJsonArray("changes") : new JsonArray();
+            boolean includeData = !request.has("include_data") || request.get("include_data").getAsBoolean();
+
+            JsonArray applied = new JsonArray();
+            JsonObject body = new JsonObject();
+            lock.writeLock().lock();
+            try {
+                for (JsonElement element : changes) {
+                    applied.add(applyChange(element.getAsJsonObject()));
+                }
+                body.add("data", includeData
+                        ? gson.toJsonTree(new ArrayList<>(products.values()))
+                        : null);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            body.addProperty("success", true);
+            body.addProperty("message", "Синхронизация успешна");
+            body.add("applied_changes", applied);
+            body.addProperty("timestamp", LocalDateTime.now().toString());
+            send(exchange, 200, body);
+        } catch (RuntimeException e) {
+            send(exchange, 500, error(String.valueOf(e.getMessage())));
+        }
+    }
+
+    // Вызывается под блокировкой записи
+    private JsonObject applyChange(JsonObject change) {
+        String key = change.has("key") ? change.get("key").getAsString() : null;
+        String action = change.has("action") ? change.get("action").getAsString() : null;
+
+        JsonObject result = new JsonObject();
+        result.addProperty("key", key);
+        result.addProperty("action", action);
+
+        if (key != null && processedOps.containsKey(key)) {
+            result.addProperty("id", processedOps.get(key));
+            result.addProperty("status", "duplicate");
+            return result;
+        }
+
+        Product input = gson.fromJson(change, Product.class);
+        Integer id = change.has("id") ? Integer.valueOf(change.get("id").getAsInt()) : null;
+        if (id == null && change.has("target_key")) {
+            id = processedOps.get(change.get("target_key").getAsString());
+        }
+
+        String status;
+        if ("create".equals(action)) {
+            if (input.name == null || input.name.trim().isEmpty()) {
+                status = "rejected";
+            } else {
+                id = insert(input.name.trim(), input.purchased, input.notes).id;
+                status = "applied";
+            }
+        } else if ("update".equals(action)) {
+            status = id != null && update(id, input) ? "applied" : "not_found";
+        } else if ("delete".equals(action)) {
+            status = id != null && products.remove(id) != null ? "applied" : "not_found";
+        } else {
+            status = "rejected";
+        }
+
+        if (key != null) {
+            processedOps.put(key, id);
+        }
+        result.addProperty("id", id);
+        result.addProperty("status", status);
+        return result;
+    }
+
+    private Product insert(String name, boolean purchased, String notes) {
+        lock.writeLock().lock();
+        try {
+            Product product = new Product(name, purchased, notes != null ? notes.trim() : "");
+            product.id = nextId++;
+            product.created_at = LocalDateTime.now().format(TIMESTAMP);
+            product.updated_at = product.created_at;
+            products.put(product.id, product);
+            return product;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Вызывается под блокировкой записи
+    private boolean update(int id, Product input) {
+        Product product = products.get(id);
+        if (product == null || input == null) {
+            return false;
+        }
+        if (input.name != null) {
+            product.name = input.name.trim();
+        }
+        product.purchased = input.purchased;
+        if (input.notes != null) {
+            product.notes = input.notes.trim();
+        }
+        product.updated_at = LocalDateTime.now().format(TIMESTAMP);
+        return true;
+    }
+
+    private void simulateLatency() {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Integer parseId(String path) {
+        String[] parts = path.split("/");
+        // "", "api", "products", "{id}"
+        if (parts.length < 4) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(parts[3]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[4096];
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, n);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static JsonObject ok(String message) {
+        JsonObject body = new JsonObject();
+        body.addProperty("success", true);
+        body.addProperty("message", message);
+        return body;
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject body = new JsonObject();
+        body.addProperty("success", false);
+        body.addProperty("error", message);
+        return body;
+    }
+
+    private void send(HttpExchange exchange, int code, JsonObject body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}